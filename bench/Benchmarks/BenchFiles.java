@@ -0,0 +1,25 @@
+package Benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/** Scratch directories for benchmark state */
+final class BenchFiles {
+
+    private BenchFiles() {}
+
+    static File tempDir(String prefix) throws IOException {
+        return Files.createTempDirectory(prefix).toFile();
+    }
+
+    static void deleteRecursively(File dir) throws IOException {
+        if (dir == null || !dir.exists()) return;
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package Benchmarks;
+
+import UIElements.SignOutRecord;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates day files in the testdata.txt schema
+ * (PeopleSignedOut,Location,TimeOut,TimeIn,Phone, names joined by '%').
+ * Output is deterministic so runs are comparable across releases.
+ */
+public class DayFileGenerator {
+
+    public static final String HEADER = "PeopleSignedOut,Location,TimeOut,TimeIn,Phone";
+
+    static final String[] SURNAMES = {
+            "Siso", "Garza", "Wall", "Padrone", "Johnson", "Atkins", "Wright", "Bus", "Fairchild",
+            "Walquest", "Delia", "Linder", "Cooper", "Redfeild", "Taylor", "Ramos", "Harper", "Drose",
+            "Mahoney", "Petrilli", "Rudolph", "Dean", "Pagan", "Nathaniel", "Qunonies", "Bodden",
+            "Martin", "Gallagher", "Kling", "Ruper", "Fresnilo", "Sandoval", "Smith", "Delwisch"
+    };
+    static final String[] LOCATIONS = {
+            "Off post", "Main PX", "Troop Store", "Dominos", "Off post/planet fitness", "Personal PT",
+            "Commecary", "Off post/mall", "Off Post/waffle house and planet fitness", "PX",
+            "Bowling alley", "Starbucks"
+    };
+
+    private final Random random;
+
+    public DayFileGenerator(long seed) {
+        random = new Random(seed);
+    }
+
+    /** Builds the rows of one day; about a third are already signed back in */
+    public List<String[]> rows(int count) {
+        List<String[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int people = 1 + random.nextInt(4);
+            StringBuilder names = new StringBuilder();
+            for (int p = 0; p < people; p++) {
+                if (p > 0) names.append('%');
+                names.append(SURNAMES[random.nextInt(SURNAMES.length)]);
+            }
+
+            // Spread sign-outs evenly over the day so times stay ordered
+            int second = (int) ((long) i * 86_399 / Math.max(1, count));
+            String timeOut = time(second);
+            String timeIn = random.nextInt(3) == 0 ? time(Math.min(86_399, second + 600 + random.nextInt(7200))) : "";
+
+            rows.add(new String[]{
+                    names.toString(),
+                    LOCATIONS[random.nextInt(LOCATIONS.length)],
+                    timeOut,
+                    timeIn,
+                    phone()
+            });
+        }
+        return rows;
+    }
+
+    /** Writes a legacy day CSV with the given number of rows */
+    public File write(File file, int count) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (String[] row : rows(count)) {
+                writer.write(String.join(",", row));
+                writer.newLine();
+            }
+        }
+        return file;
+    }
+
+    /** Builds the records the roster would hold for the generated rows */
+    public List<SignOutRecord> records(int count) {
+        List<SignOutRecord> records = new ArrayList<>(count);
+        long id = 1;
+        for (String[] row : rows(count)) {
+            SignOutRecord record = new SignOutRecord(row[0].replace("%", ", "), row[1], row[4], row[2],
+                    row[3].isEmpty() ? null : row[3]);
+            record.setId(id++);
+            records.add(record);
+        }
+        return records;
+    }
+
+    private String phone() {
+        return String.format("%03d-%03d-%04d", random.nextInt(1000), random.nextInt(1000), random.nextInt(10000));
+    }
+
+    private static String time(int secondOfDay) {
+        return String.format("%02d:%02d:%02d", secondOfDay / 3600, (secondOfDay / 60) % 60, secondOfDay % 60);
+    }
+}
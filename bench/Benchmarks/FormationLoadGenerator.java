@@ -0,0 +1,240 @@
+package Benchmarks;
+
+import CardScan.ScanPipeline;
+import Diagnostics.LatencyHistogram;
+import Engine.RosterEngine;
+import Storage.SignOutJournal;
+import UIElements.SignOutRecord;
+
+import javax.swing.*;
+import java.io.File;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Headless workload driver simulating a mass release formation: parties arrive
+ * at the kiosk, each member's CAC is scanned keystroke by keystroke
+ * ("LAST.FIRST.MIDDLE.EDIPI"), the party signs out, and some sign back in
+ * later. Reports throughput, tail latency and day-file growth.
+ *
+ * Transactions go straight to a headless RosterEngine; only the scan decoder's
+ * hand-off uses the (headless) event queue, as it does in the kiosk.
+ *   java -Djava.awt.headless=true -cp build/classes/java/main:build/classes/java/bench Benchmarks.FormationLoadGenerator
+ *   -Dload.dir=.               where the day's journal and CSV are written
+ *   -Dload.people=200          trainees signing out
+ *   -Dload.minutes=20          length of the release window
+ *   -Dload.speedup=60          time compression (60 plays 20 minutes in 20 seconds)
+ *   -Dload.maxParty=4          largest party; sizes are uniform from 1
+ *   -Dload.signInPercent=30    share of parties that sign back in during the run
+ *   -Dload.seed=1              random seed
+ */
+public class FormationLoadGenerator {
+
+    private static final DateTimeFormatter TIME_OUT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /** A scheduled kiosk transaction */
+    private static final class Event implements Comparable<Event> {
+        final long atNanos;
+        final Party party;
+        final boolean signIn;
+
+        Event(long atNanos, Party party, boolean signIn) {
+            this.atNanos = atNanos;
+            this.party = party;
+            this.signIn = signIn;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            return Long.compare(atNanos, other.atNanos);
+        }
+    }
+
+    private static final class Party {
+        final List<String> scans = new ArrayList<>();
+        String location;
+        String phone;
+        volatile SignOutRecord record;
+    }
+
+    private final int people = Integer.getInteger("load.people", 200);
+    private final double minutes = Double.parseDouble(System.getProperty("load.minutes", "20"));
+    private final double speedup = Double.parseDouble(System.getProperty("load.speedup", "60"));
+    private final int maxParty = Integer.getInteger("load.maxParty", 4);
+    private final int signInPercent = Integer.getInteger("load.signInPercent", 30);
+    private final Random random = new Random(Long.getLong("load.seed", 1));
+
+    private final LatencyHistogram scanLatency = new LatencyHistogram("scan-to-name");
+    private final LatencyHistogram signOutCall = new LatencyHistogram("sign-out-call");
+    private final LatencyHistogram signOutDurable = new LatencyHistogram("sign-out-to-durable");
+    private final LatencyHistogram signInDurable = new LatencyHistogram("sign-in-to-durable");
+    private final LatencyHistogram scheduleLag = new LatencyHistogram("schedule-lag");
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+    private final AtomicInteger failedWrites = new AtomicInteger();
+
+    private final File directory = new File(System.getProperty("load.dir", "."));
+    private RosterEngine engine;
+    private ScanPipeline scanner;
+    private volatile CountDownLatch scanned;
+    private final List<String> decoded = Collections.synchronizedList(new ArrayList<>());
+
+    public static void main(String[] args) throws Exception {
+        new FormationLoadGenerator().run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        engine = RosterEngine.headless(directory);
+        engine.start();
+        scanner = new ScanPipeline(100, name -> {
+            decoded.add(name);
+            scanned.countDown();
+        });
+
+        List<Party> parties = planParties();
+        PriorityQueue<Event> events = schedule(parties);
+
+        File journal = new File(directory, SignOutJournal.fileFor(LocalDate.now()).getName());
+        File csv = new File(directory, "CCO_SIGNOUTS_" + LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy_MM_dd")) + ".csv");
+        Thread.sleep(500); // let the roster finish loading the day
+        long journalBefore = journal.length();
+        long csvBefore = csv.length();
+
+        System.out.printf("Formation: %d people in %d parties over %.0f min (x%.0f), durability=%s%n",
+                people, parties.size(), minutes, speedup, System.getProperty("cco.durability", "group"));
+
+        long start = System.nanoTime();
+        int signOuts = 0, signIns = 0;
+        while (!events.isEmpty()) {
+            Event event = events.poll();
+            long wait = start + event.atNanos - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } else {
+                scheduleLag.record(-wait);
+            }
+
+            if (event.signIn) {
+                if (signIn(event.party)) signIns++;
+            } else {
+                signOut(event.party);
+                signOuts++;
+            }
+        }
+
+        // Wait for the persistence writer to make everything durable
+        while (pendingWrites.get() > 0) {
+            Thread.sleep(5);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long journalGrowth = journal.length() - journalBefore;
+        long csvGrowth = csv.length() - csvBefore;
+        int transactions = signOuts + signIns;
+
+        System.out.printf("Transactions: %d sign-outs, %d sign-ins, %d failed writes in %.1f s (%.1f tx/s)%n",
+                signOuts, signIns, failedWrites.get(), seconds, transactions / seconds);
+        System.out.println(scanLatency.drainSummary());
+        System.out.println(signOutCall.drainSummary());
+        System.out.println(signOutDurable.drainSummary());
+        System.out.println(signInDurable.drainSummary());
+        System.out.println(scheduleLag.drainSummary());
+        System.out.printf("Journal %s: +%d bytes (%.1f B/tx)%n", journal.getName(), journalGrowth,
+                (double) journalGrowth / Math.max(1, transactions));
+        System.out.printf("CSV %s: +%d bytes (%.1f B/tx)%n", csv.getName(), csvGrowth,
+                (double) csvGrowth / Math.max(1, transactions));
+    }
+
+    private List<Party> planParties() {
+        List<Party> parties = new ArrayList<>();
+        int remaining = people;
+        int edipi = 1_000_000_000 + random.nextInt(1_000_000);
+        while (remaining > 0) {
+            Party party = new Party();
+            int size = Math.min(remaining, 1 + random.nextInt(maxParty));
+            for (int i = 0; i < size; i++) {
+                String last = DayFileGenerator.SURNAMES[random.nextInt(DayFileGenerator.SURNAMES.length)];
+                String first = DayFileGenerator.SURNAMES[random.nextInt(DayFileGenerator.SURNAMES.length)];
+                party.scans.add(last.toUpperCase() + "." + first.toUpperCase() + "." + (char) ('A' + random.nextInt(26))
+                        + "." + (edipi++) + "\n");
+            }
+            party.location = DayFileGenerator.LOCATIONS[random.nextInt(DayFileGenerator.LOCATIONS.length)];
+            party.phone = String.format("%03d-%03d-%04d", random.nextInt(1000), random.nextInt(1000), random.nextInt(10000));
+            parties.add(party);
+            remaining -= size;
+        }
+        return parties;
+    }
+
+    /** Poisson arrivals over the (compressed) window; some parties come back before the run ends */
+    private PriorityQueue<Event> schedule(List<Party> parties) {
+        PriorityQueue<Event> events = new PriorityQueue<>();
+        double windowNanos = minutes * 60e9 / speedup;
+        double meanGap = windowNanos / parties.size();
+
+        double t = 0;
+        for (Party party : parties) {
+            t += -Math.log(1 - random.nextDouble()) * meanGap;
+            events.add(new Event((long) t, party, false));
+            if (random.nextInt(100) < signInPercent) {
+                events.add(new Event((long) (t + random.nextDouble() * windowNanos), party, true));
+            }
+        }
+        return events;
+    }
+
+    /** Scans each member through the real decode pipeline, then signs the party out */
+    private void signOut(Party party) throws Exception {
+        decoded.clear();
+
+        for (String scan : party.scans) {
+            scanned = new CountDownLatch(1);
+            long scanStart = System.nanoTime();
+            for (char c : scan.toCharArray()) {
+                // One EDT event per keystroke, stamped on dispatch like CardScannerField
+                SwingUtilities.invokeLater(() -> scanner.keyTyped(c, System.nanoTime()));
+            }
+            if (scanned.await(5, TimeUnit.SECONDS)) {
+                scanLatency.recordSince(scanStart);
+            } else {
+                System.err.println("Timed out waiting for a scan to decode");
+            }
+        }
+
+        long start = System.nanoTime();
+        SignOutRecord record = new SignOutRecord(String.join(", ", decoded), party.location, party.phone,
+                TIME_OUT.format(LocalDateTime.now()), null);
+        pendingWrites.incrementAndGet();
+        engine.signOut(record, error -> {
+            signOutDurable.recordSince(start);
+            if (error != null) failedWrites.incrementAndGet();
+            pendingWrites.decrementAndGet();
+        });
+        party.record = record;
+        signOutCall.recordSince(start);
+    }
+
+    private boolean signIn(Party party) {
+        SignOutRecord record = party.record;
+        if (record == null) return false;
+
+        long start = System.nanoTime();
+        pendingWrites.incrementAndGet();
+        boolean signedIn = engine.signIn(record, TIME_OUT.format(LocalDateTime.now()), error -> {
+            signInDurable.recordSince(start);
+            if (error != null) failedWrites.incrementAndGet();
+            pendingWrites.decrementAndGet();
+        });
+        if (!signedIn) pendingWrites.decrementAndGet();
+        return signedIn;
+    }
+}
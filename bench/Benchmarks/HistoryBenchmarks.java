@@ -0,0 +1,98 @@
+package Benchmarks;
+
+import Storage.DayArchive;
+import Storage.HistoryEngine;
+import Storage.HistoryQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for history lookups over a year of day files, read from the CSVs
+ * or from their columnar archives. Rows are spread over 365 days. Warm runs
+ * reuse the engine's caches; cold runs start from a fresh HistoryEngine, as the
+ * first lookup after launch does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(2)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+public class HistoryBenchmarks {
+
+    private static final int DAYS = 365;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 1);
+
+    @Param({"10", "1000", "100000"})
+    public int rows;
+
+    @Param({"false", "true"})
+    public boolean archived;
+
+    private File dir;
+    private HistoryEngine engine;
+    private List<HistoryQuery> queries;
+    private int next = 0;
+
+    /** Lookups the CQ makes: someone's trips, where people went, who never came back */
+    private static List<HistoryQuery> queries() {
+        List<HistoryQuery> queries = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            String surname = DayFileGenerator.SURNAMES[i * 3];
+            queries.add(HistoryQuery.all().name(surname.substring(0, 4).toLowerCase(Locale.ROOT)));
+        }
+        queries.add(HistoryQuery.all().location("px"));
+        queries.add(HistoryQuery.all().stillOut());
+        queries.add(HistoryQuery.all().name("nobody"));
+        queries.add(HistoryQuery.all().between(FIRST_DAY.plusDays(180), FIRST_DAY.plusDays(186)));
+        return queries;
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        dir = BenchFiles.tempDir("cco-bench-history");
+        int perDay = Math.max(1, rows / DAYS);
+        for (int d = 0; d < DAYS; d++) {
+            LocalDate date = FIRST_DAY.plusDays(d);
+            new DayFileGenerator(d).write(new File(dir, "CCO_SIGNOUTS_" + date.toString().replace('-', '_') + ".csv"), perDay);
+        }
+        if (archived) {
+            DayArchive.archiveMissing(dir, FIRST_DAY.plusDays(DAYS));
+        }
+        engine = new HistoryEngine(dir);
+        queries = queries();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchFiles.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public int yearWarm() {
+        return engine.countPeople(queries.get(next++ % queries.size()));
+    }
+
+    @Benchmark
+    public int yearCold() {
+        return new HistoryEngine(dir).countPeople(queries.get(next++ % queries.size()));
+    }
+}
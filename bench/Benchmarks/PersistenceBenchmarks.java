@@ -0,0 +1,124 @@
+package Benchmarks;
+
+import Storage.CsvDayView;
+import Storage.SignOutJournal;
+import UIElements.SignOutRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the day-file hot paths: loading a day, appending a sign-out
+ * and patching a sign-in time. Appends are measured without fsync so the
+ * numbers track the code rather than the disk.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(2)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+public class PersistenceBenchmarks {
+
+    /** A day's journal and CSV view, seeded from a generated CSV in the testdata schema */
+    @State(Scope.Thread)
+    public static class Day {
+        @Param({"10", "1000", "100000"})
+        public int rows;
+
+        File template;
+        File dir;
+        SignOutJournal journal;
+        CsvDayView view;
+        long[] ids;
+        int next = 0;
+
+        @Setup(Level.Trial)
+        public void generate() throws IOException {
+            template = BenchFiles.tempDir("cco-bench-day");
+            File csv = new DayFileGenerator(rows).write(new File(template, "CCO_SIGNOUTS_BENCH.csv"), rows);
+            try (SignOutJournal seed = new SignOutJournal(new File(template, "CCO_JOURNAL_BENCH.log"))) {
+                seed.importCSV(csv);
+            }
+            open();
+        }
+
+        /** Opens a fresh copy of the seeded day, so every iteration starts from the same files */
+        void open() throws IOException {
+            dir = BenchFiles.tempDir("cco-bench-run");
+            for (File file : template.listFiles()) {
+                Files.copy(file.toPath(), new File(dir, file.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            journal = new SignOutJournal(new File(dir, "CCO_JOURNAL_BENCH.log"));
+            view = new CsvDayView(new File(dir, "CCO_SIGNOUTS_BENCH.csv"));
+            List<SignOutRecord> records = journal.replay();
+            view.rebuild(records);
+            ids = new long[records.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = records.get(i).getId();
+            }
+        }
+
+        void close() throws IOException {
+            view.close();
+            journal.close();
+            BenchFiles.deleteRecursively(dir);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            close();
+            BenchFiles.deleteRecursively(template);
+        }
+    }
+
+    /** The same day, reopened before every iteration so appends measure a day of the stated size */
+    @State(Scope.Thread)
+    public static class FreshDay extends Day {
+        @Setup(Level.Iteration)
+        public void reset() throws IOException {
+            close();
+            open();
+        }
+    }
+
+    /** Startup load: replay the journal and rewrite the CSV view (formerly loadFromCSV) */
+    @Benchmark
+    public List<SignOutRecord> loadDay(Day day) throws IOException {
+        List<SignOutRecord> records = day.journal.replay();
+        day.view.rebuild(records);
+        return records;
+    }
+
+    /** One sign-out: journal append plus CSV view append (appendToCSV) */
+    @Benchmark
+    public SignOutRecord appendSignOut(FreshDay day) throws IOException {
+        SignOutRecord record = new SignOutRecord("Doe, Roe", "Main PX", "555-555-5555", "23:59:59", null);
+        day.journal.appendSignOut(record, "23:59:59");
+        day.view.append(record, "23:59:59");
+        return record;
+    }
+
+    /** One sign-in: in-place TimeIn patch of an existing row (updateTimeInCSV) */
+    @Benchmark
+    public boolean patchTimeIn(Day day) throws IOException {
+        int i = day.next++;
+        return day.view.patchTimeIn(day.ids[i % day.ids.length], i % 2 == 0 ? "18:00:00" : "18:30:00");
+    }
+}
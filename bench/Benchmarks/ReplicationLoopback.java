@@ -0,0 +1,156 @@
+package Benchmarks;
+
+import Diagnostics.LatencyHistogram;
+import Engine.RosterEngine;
+import Replication.ReplicationNode;
+import UIElements.SignOutRecord;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Runs several replicating kiosks in one process on loopback, each with its own
+ * directory and node ID. Signs people out at one kiosk and in at another, and
+ * reports how long the rosters take to agree, then cuts one kiosk off, keeps
+ * working on both sides and measures how long catch-up takes after it rejoins.
+ *   java -Djava.awt.headless=true -cp build/classes/java/main:build/classes/java/bench Benchmarks.ReplicationLoopback
+ *   -Drepl.nodes=2             kiosks
+ *   -Drepl.basePort=47100      node i listens on basePort + i
+ *   -Drepl.transactions=200    transactions per phase
+ *   -Drepl.seed=1              random seed
+ */
+public class ReplicationLoopback {
+
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final long CONVERGE_TIMEOUT_NANOS = 10_000_000_000L;
+    private static final byte[] SECRET = "loopback-bench".getBytes(StandardCharsets.UTF_8);
+
+    private final int nodeCount = Integer.getInteger("repl.nodes", 2);
+    private final int basePort = Integer.getInteger("repl.basePort", 47100);
+    private final int transactions = Integer.getInteger("repl.transactions", 200);
+    private final Random random = new Random(Long.getLong("repl.seed", 1));
+
+    private final List<RosterEngine> engines = new ArrayList<>();
+    private final List<ReplicationNode> nodes = new ArrayList<>();
+    private final LatencyHistogram convergence = new LatencyHistogram("replication-convergence");
+    private int failures = 0;
+
+    public static void main(String[] args) throws Exception {
+        new ReplicationLoopback().run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        File root = Files.createTempDirectory("cco-replication").toFile();
+        for (int i = 0; i < nodeCount; i++) {
+            File dir = new File(root, "kiosk-" + i);
+            dir.mkdirs();
+            RosterEngine engine = RosterEngine.headless(dir, "kiosk-" + i);
+            engine.start();
+            engines.add(engine);
+            nodes.add(startNode(i));
+        }
+        System.out.printf("%d kiosks on ports %d-%d, data in %s%n", nodeCount, basePort, basePort + nodeCount - 1, root);
+        awaitConvergence();
+
+        // Phase 1: every transaction should reach every kiosk well within a second
+        for (int t = 0; t < transactions; t++) {
+            transact(random.nextInt(nodeCount));
+            long start = System.nanoTime();
+            if (awaitConvergence()) {
+                convergence.recordSince(start);
+            }
+        }
+        System.out.println(convergence.drainSummary());
+
+        // Phase 2: cut the last kiosk off, keep working on both sides, then let it rejoin
+        int isolated = nodeCount - 1;
+        nodes.get(isolated).close();
+        Thread.sleep(200);
+        for (int t = 0; t < transactions; t++) {
+            transact(random.nextInt(nodeCount));
+        }
+        long start = System.nanoTime();
+        nodes.set(isolated, startNode(isolated));
+        boolean caughtUp = awaitConvergence();
+        System.out.printf("Catch-up after rejoining: %s in %.1f ms%n", caughtUp ? "converged" : "DIVERGED",
+                (System.nanoTime() - start) / 1e6);
+
+        for (int i = 0; i < nodeCount; i++) {
+            System.out.printf("kiosk-%d: %d open, %d events unacknowledged, %d applied%n", i, engines.get(i).getOpenCount(),
+                    nodes.get(i).getOutboxSize(), nodes.get(i).getAppliedCount());
+        }
+        System.out.println("Convergence failures: " + failures);
+
+        for (int i = 0; i < nodeCount; i++) {
+            nodes.get(i).close();
+            engines.get(i).close();
+        }
+    }
+
+    private ReplicationNode startNode(int index) throws IOException {
+        List<InetSocketAddress> peers = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) {
+            if (i != index) peers.add(new InetSocketAddress("127.0.0.1", basePort + i));
+        }
+        ReplicationNode node = new ReplicationNode(engines.get(index), InetAddress.getLoopbackAddress(), basePort + index,
+                peers, SECRET);
+        node.start();
+        return node;
+    }
+
+    /** Signs a party out at the kiosk, or signs in someone who is out (possibly from another kiosk) */
+    private void transact(int kiosk) {
+        RosterEngine engine = engines.get(kiosk);
+        List<SignOutRecord> out = engine.getOpenRecords();
+        String now = TIME.format(LocalDateTime.now());
+
+        if (!out.isEmpty() && random.nextInt(100) < 40) {
+            engine.signIn(out.get(random.nextInt(out.size())), now);
+        } else {
+            String name = DayFileGenerator.SURNAMES[random.nextInt(DayFileGenerator.SURNAMES.length)] + " "
+                    + (char) ('A' + random.nextInt(26));
+            String location = DayFileGenerator.LOCATIONS[random.nextInt(DayFileGenerator.LOCATIONS.length)];
+            engine.signOut(new SignOutRecord(name, location, "555-0100", now, null));
+        }
+    }
+
+    /** Polls until every kiosk has the same records out */
+    private boolean awaitConvergence() throws InterruptedException {
+        long deadline = System.nanoTime() + CONVERGE_TIMEOUT_NANOS;
+        while (System.nanoTime() < deadline) {
+            if (converged()) return true;
+            Thread.sleep(1);
+        }
+        failures++;
+        System.err.println("Kiosks did not converge within " + CONVERGE_TIMEOUT_NANOS / 1_000_000 + " ms");
+        return false;
+    }
+
+    private boolean converged() {
+        Set<String> first = openOrigins(engines.get(0));
+        for (int i = 1; i < engines.size(); i++) {
+            if (!first.equals(openOrigins(engines.get(i)))) return false;
+        }
+        return true;
+    }
+
+    private static Set<String> openOrigins(RosterEngine engine) {
+        Set<String> origins = new HashSet<>();
+        for (SignOutRecord record : engine.getOpenRecords()) {
+            origins.add(record.getOrigin());
+        }
+        return origins;
+    }
+}
@@ -0,0 +1,59 @@
+package Benchmarks;
+
+import CardScan.CacScanParser;
+import UIElements.SignOutRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Benchmarks for card-scan decoding */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(2)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+public class ScanBenchmarks {
+
+    @Param({"10", "1000", "100000"})
+    public int rows;
+
+    private char[][] scans;
+    private CacScanParser parser;
+    private String lastName;
+    private long nanos = 0;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        List<SignOutRecord> records = new DayFileGenerator(rows).records(rows);
+        scans = new char[records.size()][];
+        for (int i = 0; i < scans.length; i++) {
+            String[] names = records.get(i).getName().split(", ");
+            String last = names[0].toUpperCase();
+            String first = names[names.length - 1].toUpperCase();
+            scans[i] = (last + "." + first + ".Q." + (1_000_000_000L + i) + "\n").toCharArray();
+        }
+        parser = new CacScanParser(100_000_000L, cac -> lastName = cac.displayName());
+    }
+
+    /** Parses one CAC scan keystroke by keystroke into a display name (formerly formatDataFromCac) */
+    @Benchmark
+    public String decodeScan() {
+        for (char c : scans[next++ % scans.length]) {
+            parser.accept(c, nanos += 1_000);
+        }
+        return lastName;
+    }
+}
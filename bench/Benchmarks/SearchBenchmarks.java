@@ -0,0 +1,73 @@
+package Benchmarks;
+
+import Search.TrigramIndex;
+import UIElements.RosterListModel;
+import UIElements.SignOutRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Benchmarks for the roster search box */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(2)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+public class SearchBenchmarks {
+
+    @Param({"10", "1000", "100000"})
+    public int rows;
+
+    private final TrigramIndex<SignOutRecord> index = new TrigramIndex<>();
+    private RosterListModel model;
+    private String[] queries;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        model = new RosterListModel();
+        index.clear();
+
+        List<SignOutRecord> records = new DayFileGenerator(rows).records(rows);
+        List<String> q = new ArrayList<>();
+        for (SignOutRecord record : records) {
+            index.add(record, record.getName(), record.getLocation(), record.getPhone());
+            model.add(record);
+
+            // What people type: the start of a name, a place, or a few phone digits
+            if (q.size() < 64) {
+                String name = record.getName();
+                q.add(name.substring(0, Math.min(4, name.length())));
+                q.add(record.getLocation().substring(0, Math.min(5, record.getLocation().length())));
+                q.add(record.getPhone().substring(4, 7));
+            }
+        }
+        q.add("x");
+        q.add("zzzz");
+        queries = q.toArray(new String[0]);
+    }
+
+    /** One keystroke in the search box: index lookup plus a filtered projection (MainWindow search loop) */
+    @Benchmark
+    public int filterRoster() {
+        String query = queries[next++ % queries.length];
+        RosterListModel.Projection view = model.project(index.search(query),
+                record -> index.matches(record, query), null);
+        int size = view.getSize();
+        view.dispose();
+        return size;
+    }
+}
@@ -0,0 +1,81 @@
+package Alerts;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * How long a party may stay out before it is overdue. Loaded from a
+ * "Location:minutes" file next to user_pins.txt; the special keys
+ * "Default", "Family Leave" and "Overnight Leave" set the fallback and
+ * per-leave-type limits.
+ */
+public class OverdueLimits {
+
+    public static final String DEFAULT_KEY = "default";
+    public static final String FAMILY_LEAVE_KEY = "family leave";
+    public static final String OVERNIGHT_LEAVE_KEY = "overnight leave";
+
+    private final Map<String, Long> minutesByKey = new LinkedHashMap<>();
+
+    public OverdueLimits() {
+        minutesByKey.put(DEFAULT_KEY, 4L * 60);
+        minutesByKey.put(FAMILY_LEAVE_KEY, 72L * 60);
+        minutesByKey.put(OVERNIGHT_LEAVE_KEY, 24L * 60);
+    }
+
+    public static OverdueLimits load(File file) {
+        OverdueLimits limits = new OverdueLimits();
+
+        if (!file.exists()) {
+            System.out.println("Overdue limits file not found, using defaults: " + file.getAbsolutePath());
+            return limits;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+
+                String[] parts = line.split(":", 2);
+                try {
+                    if (parts.length != 2) throw new NumberFormatException();
+                    limits.setLimitMinutes(parts[0], Long.parseLong(parts[1].trim()));
+                } catch (NumberFormatException e) {
+                    System.out.println("Invalid line in overdue limits file: " + line);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return limits;
+    }
+
+    public void setLimitMinutes(String key, long minutes) {
+        minutesByKey.put(key.trim().toLowerCase(Locale.ROOT), minutes);
+    }
+
+    /**
+     * Returns the limit in minutes. Leave types take precedence, then the first
+     * configured location contained in the record's location, then the default.
+     */
+    public long limitMinutes(String location, boolean familyLeave, boolean overnightLeave) {
+        if (familyLeave) return minutesByKey.get(FAMILY_LEAVE_KEY);
+        if (overnightLeave) return minutesByKey.get(OVERNIGHT_LEAVE_KEY);
+
+        if (location != null) {
+            String loc = location.toLowerCase(Locale.ROOT);
+            for (Map.Entry<String, Long> entry : minutesByKey.entrySet()) {
+                String key = entry.getKey();
+                if (key.equals(DEFAULT_KEY) || key.equals(FAMILY_LEAVE_KEY) || key.equals(OVERNIGHT_LEAVE_KEY)) continue;
+                if (loc.contains(key)) return entry.getValue();
+            }
+        }
+        return minutesByKey.get(DEFAULT_KEY);
+    }
+}
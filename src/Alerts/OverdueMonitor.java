@@ -0,0 +1,118 @@
+package Alerts;
+
+import UIElements.SignOutRecord;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracks a deadline for every open sign-out and reports records that go overdue.
+ * Deadlines live in a timing wheel, so sign-out and sign-in are O(1) and ticking
+ * never scans the whole roster. Call {@link #tick(long)} from a single thread.
+ */
+public class OverdueMonitor {
+
+    public interface Listener {
+        void overdueChanged(SignOutRecord record, boolean overdue);
+    }
+
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private final OverdueLimits limits;
+    private final TimingWheel<SignOutRecord> wheel;
+    private final Map<SignOutRecord, TimingWheel.Timeout<SignOutRecord>> pending = new IdentityHashMap<>();
+    private final Set<SignOutRecord> overdue = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final List<Listener> listeners = new ArrayList<>();
+
+    public OverdueMonitor(OverdueLimits limits, long tickMillis) {
+        this.limits = limits;
+        this.wheel = new TimingWheel<>(tickMillis, 512, System.currentTimeMillis());
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /** Schedules the record's deadline from its sign-out time and its location/leave limit */
+    public void track(SignOutRecord record) {
+        track(record, null);
+    }
+
+    /**
+     * As {@link #track(SignOutRecord)}, for a record from the given day's roster: a
+     * bare HH:mm:ss sign-out time, as restored from the journal, is taken on that
+     * day rather than today.
+     */
+    public void track(SignOutRecord record, LocalDate day) {
+        untrack(record);
+
+        long limitMillis = limits.limitMinutes(record.getLocation(), record.isFamilyLeave(), record.isOvernightLeave()) * 60_000L;
+        long deadline = signOutMillis(record.getTimeSignedOut(), day) + limitMillis;
+        pending.put(record, wheel.schedule(record, deadline));
+    }
+
+    /** Cancels the record's deadline, e.g. on sign-in */
+    public void untrack(SignOutRecord record) {
+        wheel.cancel(pending.remove(record));
+        if (overdue.remove(record)) {
+            fire(record, false);
+        }
+    }
+
+    /** Advances to the given time and flags every record whose deadline passed */
+    public void tick(long nowMillis) {
+        wheel.advanceTo(nowMillis, record -> {
+            pending.remove(record);
+            if (overdue.add(record)) {
+                System.out.println("Overdue: " + record.getName() + " (" + record.getLocation() + ")");
+                fire(record, true);
+            }
+        });
+    }
+
+    public boolean isOverdue(SignOutRecord record) {
+        return overdue.contains(record);
+    }
+
+    public int getOverdueCount() {
+        return overdue.size();
+    }
+
+    public long getTickMillis() {
+        return wheel.getTickMillis();
+    }
+
+    private void fire(SignOutRecord record, boolean isOverdue) {
+        for (Listener listener : listeners) {
+            listener.overdueChanged(record, isOverdue);
+        }
+    }
+
+    /** Sign-out time as epoch millis; a bare HH:mm:ss is taken on the given day, or today if none */
+    static long signOutMillis(String time, LocalDate day) {
+        LocalDateTime dateTime;
+        try {
+            if (time != null && time.length() == 19) {
+                dateTime = LocalDateTime.parse(time, DATE_TIME);
+            } else if (time != null && time.length() == 8) {
+                dateTime = LocalDateTime.of(day != null ? day : LocalDate.now(), LocalTime.parse(time, TIME));
+            } else {
+                dateTime = LocalDateTime.now();
+            }
+        } catch (DateTimeParseException e) {
+            dateTime = LocalDateTime.now();
+        }
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
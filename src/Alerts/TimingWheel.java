@@ -0,0 +1,117 @@
+package Alerts;
+
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel. Deadlines are hashed into buckets by tick, so scheduling
+ * and cancelling are O(1) and each tick only looks at a single bucket. Not
+ * thread-safe; drive it from one thread.
+ */
+public class TimingWheel<T> {
+
+    /** Handle for a scheduled deadline, used to cancel it */
+    public static final class Timeout<T> {
+        private final T item;
+        private final long deadline;
+        private long rounds;
+        private int bucket = -1;
+        private Timeout<T> prev, next;
+
+        private Timeout(T item, long deadline) {
+            this.item = item;
+            this.deadline = deadline;
+        }
+
+        public T getItem() { return item; }
+        public long getDeadline() { return deadline; }
+
+        public boolean isPending() {
+            return bucket >= 0;
+        }
+    }
+
+    private final long tickMillis;
+    private final int mask;
+    private final Timeout<T>[] heads;
+    private long currentTick;
+    private int pending = 0;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Wheel size must be a power of two: " + wheelSize);
+        }
+        this.tickMillis = tickMillis;
+        this.mask = wheelSize - 1;
+        this.heads = (Timeout<T>[]) new Timeout<?>[wheelSize];
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    public int size() {
+        return pending;
+    }
+
+    /** Schedules the item to expire at the given time; past deadlines expire on the next tick */
+    public Timeout<T> schedule(T item, long deadlineMillis) {
+        Timeout<T> timeout = new Timeout<>(item, deadlineMillis);
+
+        long deadlineTick = Math.max(deadlineMillis / tickMillis, currentTick + 1);
+        long ticks = deadlineTick - currentTick;
+        timeout.rounds = (ticks - 1) / heads.length;
+        link(timeout, (int) (deadlineTick & mask));
+        return timeout;
+    }
+
+    /** Cancels a pending deadline; returns false if it already expired or was cancelled */
+    public boolean cancel(Timeout<T> timeout) {
+        if (timeout == null || !timeout.isPending()) return false;
+        unlink(timeout);
+        return true;
+    }
+
+    /** Advances the wheel to the given time, handing every expired item to the callback */
+    public void advanceTo(long nowMillis, Consumer<T> expired) {
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            expireBucket((int) (currentTick & mask), expired);
+        }
+    }
+
+    private void expireBucket(int bucket, Consumer<T> expired) {
+        Timeout<T> timeout = heads[bucket];
+        while (timeout != null) {
+            Timeout<T> next = timeout.next;
+            if (timeout.rounds <= 0) {
+                unlink(timeout);
+                expired.accept(timeout.item);
+            } else {
+                timeout.rounds--;
+            }
+            timeout = next;
+        }
+    }
+
+    private void link(Timeout<T> timeout, int bucket) {
+        timeout.bucket = bucket;
+        timeout.prev = null;
+        timeout.next = heads[bucket];
+        if (heads[bucket] != null) heads[bucket].prev = timeout;
+        heads[bucket] = timeout;
+        pending++;
+    }
+
+    private void unlink(Timeout<T> timeout) {
+        if (timeout.prev != null) timeout.prev.next = timeout.next;
+        else heads[timeout.bucket] = timeout.next;
+        if (timeout.next != null) timeout.next.prev = timeout.prev;
+
+        timeout.prev = timeout.next = null;
+        timeout.bucket = -1;
+        pending--;
+    }
+}
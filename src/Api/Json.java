@@ -0,0 +1,112 @@
+package Api;
+
+/** Minimal JSON writer for the API's flat objects and arrays */
+class Json {
+
+    private final StringBuilder sb;
+    private boolean first = true;
+
+    Json(int capacity) {
+        sb = new StringBuilder(capacity);
+    }
+
+    Json beginObject() {
+        separate();
+        sb.append('{');
+        first = true;
+        return this;
+    }
+
+    Json endObject() {
+        sb.append('}');
+        first = false;
+        return this;
+    }
+
+    Json beginArray() {
+        separate();
+        sb.append('[');
+        first = true;
+        return this;
+    }
+
+    Json endArray() {
+        sb.append(']');
+        first = false;
+        return this;
+    }
+
+    /** Writes a member name; the next value written is its value */
+    Json name(String name) {
+        separate();
+        quote(name);
+        sb.append(':');
+        first = true;
+        return this;
+    }
+
+    Json value(String value) {
+        separate();
+        if (value == null) {
+            sb.append("null");
+        } else {
+            quote(value);
+        }
+        return this;
+    }
+
+    Json value(long value) {
+        separate();
+        sb.append(value);
+        return this;
+    }
+
+    Json value(boolean value) {
+        separate();
+        sb.append(value);
+        return this;
+    }
+
+    Json member(String name, String value) {
+        return name(name).value(value);
+    }
+
+    Json member(String name, long value) {
+        return name(name).value(value);
+    }
+
+    Json member(String name, boolean value) {
+        return name(name).value(value);
+    }
+
+    @Override
+    public String toString() {
+        return sb.toString();
+    }
+
+    private void separate() {
+        if (!first) sb.append(',');
+        first = false;
+    }
+
+    private void quote(String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+}
@@ -0,0 +1,410 @@
+package Api;
+
+import Engine.RosterEngine;
+import Storage.HistoryEngine;
+import Storage.HistoryQuery;
+import Storage.HistoryRow;
+import UIElements.SignOutRecord;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Read-only HTTP/JSON view of the live roster for the CQ and 1SG desks.
+ *   GET /api/roster                  people currently out
+ *   GET /api/counts                  parties and people out, by location
+ *   GET /api/history?name=&location=&from=yyyy-MM-dd&to=&stillOut=true&limit=
+ *   GET /api/events                  server-sent events of every change (see RosterEventStream)
+ *
+ * Bodies are serialized once per roster version and shared by every poller;
+ * the version is the ETag, so an unchanged roster costs a 304 and no work.
+ * Requests are served on the server's own threads and read the engine, never the UI.
+ * When a token is configured, every request must carry "Authorization: Bearer <token>".
+ */
+public class RosterApiServer implements Closeable {
+
+    private static final int HISTORY_CACHE_SIZE = 64;
+    private static final int DEFAULT_HISTORY_LIMIT = 1000;
+
+    /** A serialized body and the roster version it was built from */
+    private static final class Body {
+        final long version;
+        final String etag;
+        final byte[] json;
+
+        Body(long version, String etag, byte[] json) {
+            this.version = version;
+            this.etag = etag;
+            this.json = json;
+        }
+    }
+
+    private final RosterEngine engine;
+    private final HistoryEngine history;
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private final RosterEventStream events;
+    private final byte[] token; // null when requests need no token
+    // Tells bodies from an earlier run apart, since versions restart at zero
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private volatile Body roster;
+    private volatile Body counts;
+    private final Map<String, Body> historyCache = Collections.synchronizedMap(
+            new LinkedHashMap<String, Body>(HISTORY_CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Body> eldest) {
+                    return size() > HISTORY_CACHE_SIZE;
+                }
+            });
+
+    public RosterApiServer(RosterEngine engine, File historyDirectory, InetSocketAddress address, int threads) throws IOException {
+        this(engine, historyDirectory, address, threads, 256, 64, null);
+    }
+
+    /**
+     * eventBuffer bounds each event stream client's queue; beyond maxSubscribers new clients get a 503.
+     * A null or empty token lets any client that can reach the address in.
+     */
+    public RosterApiServer(RosterEngine engine, File historyDirectory, InetSocketAddress address, int threads,
+                           int eventBuffer, int maxSubscribers, String token) throws IOException {
+        this.engine = engine;
+        this.token = token == null || token.isEmpty() ? null : token.getBytes(StandardCharsets.UTF_8);
+        this.history = new HistoryEngine(historyDirectory);
+        this.events = new RosterEventStream(engine, eventBuffer, maxSubscribers);
+
+        AtomicInteger count = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "api-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        server = HttpServer.create(address, 0);
+        server.setExecutor(workers);
+        server.createContext("/api/roster", exchange -> serve(exchange, this::rosterBody));
+        server.createContext("/api/counts", exchange -> serve(exchange, this::countsBody));
+        server.createContext("/api/history", exchange -> serve(exchange, () -> historyBody(exchange.getRequestURI())));
+        server.createContext("/api/events", exchange -> {
+            if (authorized(exchange)) {
+                events.subscribe(exchange);
+            } else {
+                try (exchange) {
+                    sendUnauthorized(exchange);
+                }
+            }
+        });
+    }
+
+    /**
+     * Server configured by cco.apiPort (and optionally cco.apiBind, cco.apiToken,
+     * cco.apiThreads, cco.apiEventBuffer and cco.apiMaxSubscribers), or null if the
+     * API is not enabled. It listens on loopback unless cco.apiBind says otherwise.
+     */
+    public static RosterApiServer fromSystemProperties(RosterEngine engine, File historyDirectory) throws IOException {
+        Integer port = Integer.getInteger("cco.apiPort");
+        if (port == null) return null;
+
+        String bind = System.getProperty("cco.apiBind");
+        InetSocketAddress address = bind == null
+                ? new InetSocketAddress(InetAddress.getLoopbackAddress(), port) : new InetSocketAddress(bind, port);
+        String token = System.getProperty("cco.apiToken");
+        if (bind != null && (token == null || token.isEmpty())) {
+            System.err.println("Roster API is bound to " + bind + " without cco.apiToken; anyone who can reach it can read the roster");
+        }
+        return new RosterApiServer(engine, historyDirectory, address, Integer.getInteger("cco.apiThreads", 2),
+                Integer.getInteger("cco.apiEventBuffer", 256), Integer.getInteger("cco.apiMaxSubscribers", 64), token);
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("Roster API listening on " + server.getAddress().getAddress().getHostAddress() + ":" + getPort());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /** Produces the current body for a request, building it only if the roster changed */
+    private interface BodySource {
+        Body get() throws IOException;
+    }
+
+    private void serve(HttpExchange exchange, BodySource source) throws IOException {
+        try (exchange) {
+            if (!authorized(exchange)) {
+                sendUnauthorized(exchange);
+                return;
+            }
+            String method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            Body body;
+            try {
+                body = source.get();
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, e.getMessage());
+                return;
+            } catch (IOException | UncheckedIOException e) {
+                e.printStackTrace();
+                sendError(exchange, 500, "Could not read history");
+                return;
+            }
+
+            exchange.getResponseHeaders().set("ETag", body.etag);
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            if (matchesAny(body.etag, exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            if (method.equals("HEAD")) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.json.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body.json);
+            }
+        }
+    }
+
+    /** True if the If-None-Match header lists the ETag, compared weakly as RFC 9110 asks, or is "*" */
+    static boolean matchesAny(String etag, String ifNoneMatch) {
+        if (ifNoneMatch == null) return false;
+        String opaque = stripWeak(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*") || stripWeak(candidate).equals(opaque)) return true;
+        }
+        return false;
+    }
+
+    private static String stripWeak(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    private boolean authorized(HttpExchange exchange) {
+        if (token == null) return true;
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.startsWith("Bearer ")) return false;
+        return MessageDigest.isEqual(token, header.substring(7).trim().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void sendUnauthorized(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+        sendError(exchange, 401, "Missing or wrong API token");
+    }
+
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] json = new Json(64).beginObject().member("error", message).endObject().toString()
+                .getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, json.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(json);
+        }
+    }
+
+    private Body rosterBody() {
+        Body cached = roster;
+        if (cached != null && cached.version == engine.getVersion()) return cached;
+
+        List<SignOutRecord> records = new ArrayList<>();
+        RosterEngine.OpenCounts counts = engine.snapshotOpenRecords(records);
+        roster = cached = body(counts.getVersion(), "roster", rosterJson(counts, engine.getCurrentDate(), records));
+        return cached;
+    }
+
+    /** The roster document, also sent as the event stream's snapshot */
+    static Json rosterJson(RosterEngine.OpenCounts counts, LocalDate date, List<SignOutRecord> records) {
+        Json json = new Json(128 + records.size() * 160).beginObject()
+                .member("version", counts.getVersion())
+                .member("date", String.valueOf(date))
+                .member("parties", counts.getParties())
+                .name("records").beginArray();
+        for (SignOutRecord record : records) {
+            writeRecord(json, record);
+        }
+        return json.endArray().endObject();
+    }
+
+    static void writeRecord(Json json, SignOutRecord record) {
+        writeRecord(json, record, record.getTimeSignedOut());
+    }
+
+    /** Writes the record as signed out at timeOut, e.g. a carried-over record whose new time has not been set yet */
+    static void writeRecord(Json json, SignOutRecord record, String timeOut) {
+        json.beginObject()
+                .member("origin", record.getOrigin())
+                .member("party", record.getParty())
+                .member("names", record.getName())
+                .member("location", record.getLocation())
+                .member("phone", record.getPhone())
+                .member("timeOut", timeOut)
+                .member("timeIn", record.getTimeSignedIn())
+                .member("familyLeave", record.isFamilyLeave())
+                .member("overnightLeave", record.isOvernightLeave())
+                .endObject();
+    }
+
+    private Body countsBody() {
+        Body cached = counts;
+        if (cached != null && cached.version == engine.getVersion()) return cached;
+
+        List<SignOutRecord> records = new ArrayList<>();
+        RosterEngine.OpenCounts totals = engine.snapshotOpenRecords(records);
+        // The totals are the engine's; only the split by location is counted here
+        Map<String, int[]> byLocation = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        Set<String> seenParties = new HashSet<>();
+        for (SignOutRecord record : records) {
+            int[] location = byLocation.computeIfAbsent(record.getLocation().trim(), k -> new int[2]);
+            // Members of a party leave for the same place, so it is counted once there
+            if (record.getParty() == null || seenParties.add(record.getParty())) location[0]++;
+            location[1] += record.getHeadCount();
+        }
+
+        Json json = new Json(128 + byLocation.size() * 64).beginObject()
+                .member("version", totals.getVersion())
+                .member("date", String.valueOf(engine.getCurrentDate()))
+                .member("parties", totals.getParties())
+                .member("people", totals.getHeads())
+                .name("byLocation").beginArray();
+        for (Map.Entry<String, int[]> entry : byLocation.entrySet()) {
+            json.beginObject()
+                    .member("location", entry.getKey())
+                    .member("parties", entry.getValue()[0])
+                    .member("people", entry.getValue()[1])
+                    .endObject();
+        }
+        json.endArray().endObject();
+
+        counts = cached = body(totals.getVersion(), "counts", json);
+        return cached;
+    }
+
+    /** History answers change when today's file does, so they are cached per roster version and query */
+    private Body historyBody(URI uri) {
+        String rawQuery = uri.getRawQuery() == null ? "" : uri.getRawQuery();
+        long version = engine.getVersion();
+        Body cached = historyCache.get(rawQuery);
+        if (cached != null && cached.version == version) return cached;
+
+        Map<String, String> params = parseParams(rawQuery);
+        HistoryQuery query = HistoryQuery.all()
+                .name(params.get("name"))
+                .location(params.get("location"))
+                .between(parseDate(params.get("from")), parseDate(params.get("to")));
+        if (Boolean.parseBoolean(params.get("stillOut"))) query.stillOut();
+        int limit = parseLimit(params.get("limit"));
+
+        // Keep the most recent rows when there are more than the limit
+        ArrayDeque<HistoryRow> rows = new ArrayDeque<>();
+        int[] matched = new int[1];
+        history.query(query, row -> {
+            matched[0]++;
+            rows.addLast(row);
+            if (rows.size() > limit) rows.removeFirst();
+        });
+
+        Json json = new Json(128 + rows.size() * 160).beginObject()
+                .member("version", version)
+                .member("matched", matched[0])
+                .member("returned", rows.size())
+                .name("rows").beginArray();
+        for (HistoryRow row : rows) {
+            json.beginObject()
+                    .member("date", row.getDate().toString())
+                    .member("names", row.getNames())
+                    .member("location", row.getLocation())
+                    .member("timeOut", row.getTimeOut())
+                    .member("timeIn", row.getTimeIn())
+                    .member("phone", row.getPhone())
+                    .endObject();
+        }
+        json.endArray().endObject();
+
+        cached = body(version, "history-" + Integer.toHexString(rawQuery.hashCode()), json);
+        historyCache.put(rawQuery, cached);
+        return cached;
+    }
+
+    private Body body(long version, String kind, Json json) {
+        String etag = "\"" + kind + "-" + epoch + "-" + version + "\"";
+        return new Body(version, etag, json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Map<String, String> parseParams(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) continue;
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.put(key, value);
+        }
+        return params;
+    }
+
+    private static LocalDate parseDate(String value) {
+        if (value == null || value.isEmpty()) return null;
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Dates must be yyyy-MM-dd: " + value);
+        }
+    }
+
+    private static int parseLimit(String value) {
+        if (value == null || value.isEmpty()) return DEFAULT_HISTORY_LIMIT;
+        try {
+            return Math.max(1, Integer.parseInt(value));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("limit must be a number: " + value);
+        }
+    }
+
+    @Override
+    public void close() {
+        events.close();
+        server.stop(0);
+        workers.shutdown();
+        try {
+            workers.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package Api;
+
+import Engine.RosterEngine;
+import UIElements.SignOutRecord;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes roster changes to wall displays as server-sent events. Each change is
+ * serialized once, with the roster version as its event ID, and offered to
+ * every subscriber's bounded queue; a queue that is full drops its oldest
+ * event, so a slow client costs the kiosk nothing. Every subscriber has its
+ * own writer thread.
+ *
+ * A client reconnecting with Last-Event-ID gets the events it missed from a
+ * replay ring; if they are no longer there (or the kiosk restarted) it gets a
+ * snapshot of the roster instead, and then live events.
+ *   event: signOut / signIn      data: the record
+ *   event: signIns               data: the records signed in together as one change
+ *   event: dayRolledOver         data: the new date and the records carried over
+ *   event: snapshot              data: the /api/roster document
+ *   event: overflow              data: how many events this client missed; refetch the roster
+ */
+class RosterEventStream implements RosterEngine.Listener, Closeable {
+
+    private static final int REPLAY_SIZE = 1024;
+    private static final long HEARTBEAT_MS = 15_000;
+
+    /** One serialized SSE frame */
+    private static final class Event {
+        final long version;
+        final byte[] frame;
+
+        Event(long version, byte[] frame) {
+            this.version = version;
+            this.frame = frame;
+        }
+    }
+
+    /** A connected client and its bounded, drop-oldest queue */
+    private static final class Subscriber {
+        final HttpExchange exchange;
+        final ArrayDeque<Event> queue = new ArrayDeque<>();
+        int dropped = 0;
+        boolean closed = false;
+
+        Subscriber(HttpExchange exchange) {
+            this.exchange = exchange;
+        }
+    }
+
+    private final RosterEngine engine;
+    private final int bufferSize;
+    private final int maxSubscribers;
+    // Tells IDs from an earlier run apart, since versions restart at zero
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final ArrayDeque<Event> replay = new ArrayDeque<>(); // guarded by this
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    RosterEventStream(RosterEngine engine, int bufferSize, int maxSubscribers) {
+        this.engine = engine;
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        engine.addListener(this);
+    }
+
+    // Called with the engine lock held: serialize once and hand off, never block
+
+    @Override
+    public void recordAdded(SignOutRecord record) {
+        Json json = new Json(192);
+        RosterApiServer.writeRecord(json, record);
+        publish("signOut", json);
+    }
+
+    @Override
+    public void recordRemoved(SignOutRecord record) {
+        Json json = new Json(192);
+        RosterApiServer.writeRecord(json, record);
+        publish("signIn", json);
+    }
+
+    @Override
+    public void recordsRemoved(List<SignOutRecord> records) {
+        // One change, so one event: it carries the version like any other
+        Json json = new Json(32 + records.size() * 160).beginObject().name("records").beginArray();
+        for (SignOutRecord record : records) {
+            RosterApiServer.writeRecord(json, record);
+        }
+        publish("signIns", json.endArray().endObject());
+    }
+
+    @Override
+    public void dayRolledOver(LocalDate newDate, List<SignOutRecord> carriedOver, String timeOut) {
+        Json json = new Json(64 + carriedOver.size() * 160).beginObject()
+                .member("date", newDate.toString())
+                .name("carriedOver").beginArray();
+        for (SignOutRecord record : carriedOver) {
+            RosterApiServer.writeRecord(json, record, timeOut);
+        }
+        publish("dayRolledOver", json.endArray().endObject());
+    }
+
+    private synchronized void publish(String type, Json data) {
+        long version = engine.getVersion();
+        Event event = new Event(version, frame(version, type, data.toString()));
+
+        replay.addLast(event);
+        if (replay.size() > REPLAY_SIZE) replay.removeFirst();
+
+        for (Subscriber subscriber : subscribers) {
+            synchronized (subscriber) {
+                if (subscriber.queue.size() == bufferSize) {
+                    subscriber.queue.removeFirst();
+                    subscriber.dropped++;
+                }
+                subscriber.queue.addLast(event);
+                subscriber.notify();
+            }
+        }
+    }
+
+    /** Takes over the exchange and streams to it from a thread of its own */
+    void subscribe(HttpExchange exchange) throws IOException {
+        // Claim a place first, so clients arriving together cannot all pass the check
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+        }
+
+        // Registered before the snapshot is taken, so no change falls between the two
+        Subscriber subscriber = new Subscriber(exchange);
+        subscribers.add(subscriber);
+        Thread thread = new Thread(() -> stream(subscriber), "sse-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void stream(Subscriber subscriber) {
+        HttpExchange exchange = subscriber.exchange;
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.getResponseHeaders().set("X-Accel-Buffering", "no");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            out.write("retry: 2000\n\n".getBytes(StandardCharsets.UTF_8));
+
+            long skipThrough = resume(subscriber, lastEventId(exchange));
+            if (skipThrough < 0) {
+                List<SignOutRecord> records = new ArrayList<>();
+                RosterEngine.OpenCounts counts = engine.snapshotOpenRecords(records);
+                skipThrough = counts.getVersion();
+                String data = RosterApiServer.rosterJson(counts, engine.getCurrentDate(), records).toString();
+                out.write(frame(skipThrough, "snapshot", data));
+            }
+            out.flush();
+
+            List<Event> batch = new ArrayList<>();
+            while (true) {
+                int dropped;
+                synchronized (subscriber) {
+                    if (subscriber.queue.isEmpty() && !subscriber.closed) {
+                        subscriber.wait(HEARTBEAT_MS);
+                    }
+                    if (subscriber.closed) break;
+                    batch.addAll(subscriber.queue);
+                    subscriber.queue.clear();
+                    dropped = subscriber.dropped;
+                    subscriber.dropped = 0;
+                }
+
+                if (dropped > 0) {
+                    String data = new Json(32).beginObject().member("dropped", dropped).endObject().toString();
+                    out.write(("event: overflow\ndata: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+                }
+                if (batch.isEmpty()) {
+                    out.write(": ping\n\n".getBytes(StandardCharsets.UTF_8));
+                }
+                for (Event event : batch) {
+                    if (event.version > skipThrough) out.write(event.frame);
+                }
+                batch.clear();
+                out.flush();
+            }
+        } catch (IOException e) {
+            // The client went away
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (subscribers.remove(subscriber)) subscriberCount.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    /**
+     * Queues the events after lastEventId if the replay ring still holds them all,
+     * in place of what the subscriber has queued since it registered. Returns the
+     * version already covered, or -1 if the client needs a snapshot.
+     */
+    private synchronized long resume(Subscriber subscriber, String lastEventId) {
+        // Every version step publishes an event, so the ring covers the gap unless it was evicted
+        long last = parseVersion(lastEventId);
+        if (last < 0 || last > engine.getVersion()
+                || (!replay.isEmpty() && replay.peekFirst().version > last + 1)) {
+            return -1;
+        }
+        synchronized (subscriber) {
+            // Everything queued since registering is also in the ring
+            subscriber.queue.clear();
+            for (Event event : replay) {
+                if (event.version > last) subscriber.queue.addLast(event);
+            }
+        }
+        return last;
+    }
+
+    /** Parses "epoch-version", returning -1 for IDs from another run or none at all */
+    private long parseVersion(String lastEventId) {
+        if (lastEventId == null || !lastEventId.startsWith(epoch + "-")) return -1;
+        try {
+            return Long.parseLong(lastEventId.substring(epoch.length() + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** The Last-Event-ID header, or a lastEventId query parameter for clients that cannot set headers */
+    private static String lastEventId(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Last-Event-ID");
+        if (header != null) return header.trim();
+        String query = exchange.getRequestURI().getQuery();
+        if (query == null) return null;
+        for (String pair : query.split("&")) {
+            if (pair.startsWith("lastEventId=")) return pair.substring("lastEventId=".length());
+        }
+        return null;
+    }
+
+    private byte[] frame(long version, String type, String data) {
+        return ("id: " + epoch + "-" + version + "\nevent: " + type + "\ndata: " + data + "\n\n")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /** Ends every stream and stops listening to the engine */
+    @Override
+    public void close() {
+        engine.removeListener(this);
+        for (Subscriber subscriber : subscribers) {
+            synchronized (subscriber) {
+                subscriber.closed = true;
+                subscriber.notify();
+            }
+        }
+    }
+}
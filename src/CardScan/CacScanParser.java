@@ -0,0 +1,95 @@
+package CardScan;
+
+/**
+ * State machine that turns raw scanner keystrokes into decoded scans. A scan
+ * starts after a pause longer than the scan timeout and ends at Enter or Tab;
+ * '.' separates fields. A {@link #RESET} keystroke abandons the scan in progress.
+ */
+public class CacScanParser implements ScanRingBuffer.Sink {
+
+    /** Called on the decoder thread; the DecodedCac is reused once this returns */
+    public interface Listener {
+        void scanned(DecodedCac cac);
+    }
+
+    /** Sentinel keystroke that discards the partial scan, e.g. on focus loss */
+    public static final char RESET = '\0';
+
+    private enum State { IDLE, READING, DISCARDING }
+
+    private final DecodedCac cac = new DecodedCac();
+    private final Listener listener;
+    private final long timeoutNanos;
+
+    private State state = State.IDLE;
+    private long lastNanos;
+    private long discarded = 0;
+
+    public CacScanParser(long timeoutNanos, Listener listener) {
+        this.timeoutNanos = timeoutNanos;
+        this.listener = listener;
+    }
+
+    @Override
+    public void accept(char c, long nanos) {
+        if (c == RESET) {
+            state = State.IDLE;
+            return;
+        }
+
+        // A long gap means the keystrokes so far were not one scan
+        if (state != State.IDLE && nanos - lastNanos > timeoutNanos) {
+            state = State.IDLE;
+        }
+        lastNanos = nanos;
+
+        if (state == State.IDLE) {
+            cac.reset();
+            cac.startNanos = nanos;
+            state = State.READING;
+        }
+
+        if (c == '\n' || c == '\t') {
+            if (state == State.READING && cac.length > 0) {
+                endField();
+                listener.scanned(cac);
+            }
+            state = State.IDLE;
+            return;
+        }
+
+        if (state == State.DISCARDING || !isScanChar(c)) return;
+
+        if (cac.length == DecodedCac.MAX_LENGTH
+                || (c == '.' && cac.fieldCount == DecodedCac.MAX_FIELDS - 1)) {
+            // Too long to be a CAC; drop it rather than decode a truncated name
+            state = State.DISCARDING;
+            discarded++;
+            return;
+        }
+
+        if (c == '.') {
+            endField();
+        } else {
+            cac.chars[cac.length++] = c;
+        }
+    }
+
+    private void endField() {
+        cac.fieldEnds[cac.fieldCount++] = cac.length;
+        if (cac.length < DecodedCac.MAX_LENGTH) {
+            // Keep field offsets contiguous: field i+1 starts one past field i's end
+            cac.chars[cac.length++] = '.';
+        }
+    }
+
+    /** Number of scans dropped for exceeding the buffer */
+    public long getDiscardedCount() {
+        return discarded;
+    }
+
+    private static boolean isScanChar(char c) {
+        return Character.isLetterOrDigit(c) || c == ';' || c == '%' ||
+                c == '=' || c == '?' || c == '^' || c == ' ' || c == '.';
+    }
+}
@@ -0,0 +1,78 @@
+package CardScan;
+
+/**
+ * A decoded scan ("LAST.FIRST.MIDDLE..."), held as offsets into a reusable
+ * char buffer. One instance is reused for every scan, so decoding allocates
+ * nothing until the display name is built.
+ */
+public class DecodedCac {
+
+    static final int MAX_LENGTH = 512;
+    static final int MAX_FIELDS = 16;
+
+    final char[] chars = new char[MAX_LENGTH];
+    int length = 0;
+    final int[] fieldEnds = new int[MAX_FIELDS];
+    int fieldCount = 0;
+    long startNanos;
+
+    private final StringBuilder name = new StringBuilder(32);
+
+    void reset() {
+        length = 0;
+        fieldCount = 0;
+    }
+
+    /** nanoTime stamp of the scan's first keystroke */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    public int fieldStart(int field) {
+        return field == 0 ? 0 : fieldEnds[field - 1] + 1;
+    }
+
+    public int fieldEnd(int field) {
+        return fieldEnds[field];
+    }
+
+    public int fieldLength(int field) {
+        return fieldEnd(field) - fieldStart(field);
+    }
+
+    /** The field as a decimal number, e.g. the DoD ID; -1 if the scan has no such field or it is not one */
+    public long numericField(int field) {
+        if (field >= fieldCount || fieldLength(field) == 0 || fieldLength(field) > 18) return -1;
+        long value = 0;
+        for (int i = fieldStart(field); i < fieldEnd(field); i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /** "Lastname F", as the bubble panel shows it; null if the scan lacks last, first and middle fields */
+    public String displayName() {
+        if (fieldCount < 3 || fieldLength(0) == 0 || fieldLength(1) == 0) return null;
+
+        name.setLength(0);
+        appendCapitalized(name, 0);
+        name.append(' ').append(Character.toUpperCase(chars[fieldStart(1)]));
+        return name.toString();
+    }
+
+    /** Appends the field with its first letter upper-cased and the rest lower-cased */
+    private void appendCapitalized(StringBuilder sb, int field) {
+        int start = fieldStart(field);
+        int end = fieldEnd(field);
+        sb.append(Character.toUpperCase(chars[start]));
+        for (int i = start + 1; i < end; i++) {
+            sb.append(Character.toLowerCase(chars[i]));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package CardScan;
+
+import Diagnostics.Latency;
+import Directory.Person;
+import Directory.PersonnelDirectory;
+
+import javax.swing.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Moves card-scan decoding off the EDT. The EDT only stamps each keystroke into
+ * a ring buffer; a decoder thread parses completed scans, looks the card up in
+ * the personnel directory, and hands the display name and profile back to the EDT.
+ */
+public class ScanPipeline {
+
+    private static final int RING_CAPACITY = 4096;
+    // Which '.'-separated field of the scan holds the DoD ID the directory is keyed by
+    private static final int CARD_ID_FIELD = Integer.getInteger("cco.cacIdField", 3);
+
+    private final ScanRingBuffer ring = new ScanRingBuffer(RING_CAPACITY);
+    private final CacScanParser parser;
+    private final Thread decoder;
+    private volatile boolean running = true;
+
+    /** onName is called on the EDT with "Lastname F" for every complete scan */
+    public ScanPipeline(long scanTimeoutMs, Consumer<String> onName) {
+        this(scanTimeoutMs, PersonnelDirectory.empty(), (name, person) -> onName.accept(name));
+    }
+
+    /** onScan is called on the EDT with "Lastname F" and the card's directory entry, or null if it has none */
+    public ScanPipeline(long scanTimeoutMs, PersonnelDirectory directory, BiConsumer<String, Person> onScan) {
+        parser = new CacScanParser(TimeUnit.MILLISECONDS.toNanos(scanTimeoutMs), cac -> {
+            String name = cac.displayName();
+            long start = cac.getStartNanos();
+            if (name != null) {
+                Person person = directory.lookup(cac.numericField(CARD_ID_FIELD));
+                SwingUtilities.invokeLater(() -> {
+                    onScan.accept(name, person);
+                    Latency.record(Latency.SCAN_TO_BUBBLE, start);
+                });
+            } else {
+                System.out.println("Unrecognized card scan (" + cac.getFieldCount() + " fields)");
+            }
+        });
+
+        decoder = new Thread(this::run, "cac-scan-decoder");
+        decoder.setDaemon(true);
+        decoder.start();
+    }
+
+    /** Records a keystroke; called on the EDT */
+    public void keyTyped(char c, long nanos) {
+        // A full ring means the decoder is a whole ring behind; wait for it rather than drop keys
+        while (!ring.offer(c, nanos)) {
+            LockSupport.unpark(decoder);
+            Thread.onSpinWait();
+        }
+        LockSupport.unpark(decoder);
+    }
+
+    /** Abandons any partial scan, e.g. when the scanner field loses focus */
+    public void reset() {
+        keyTyped(CacScanParser.RESET, System.nanoTime());
+    }
+
+    public void close() {
+        running = false;
+        LockSupport.unpark(decoder);
+    }
+
+    private void run() {
+        while (running) {
+            if (ring.drain(parser) == 0) {
+                // An unpark between drain and park leaves a permit, so no keystroke is missed
+                LockSupport.park(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package CardScan;
+
+/**
+ * Preallocated single-producer/single-consumer ring of keystrokes and their
+ * nanoTime stamps. The EDT offers, the decoder thread drains; neither side
+ * allocates or locks.
+ */
+public class ScanRingBuffer {
+
+    /** Receives drained keystrokes in order */
+    public interface Sink {
+        void accept(char c, long nanos);
+    }
+
+    private final char[] chars;
+    private final long[] stamps;
+    private final int mask;
+
+    private volatile long head = 0; // next slot to read, written by the consumer
+    private volatile long tail = 0; // next slot to write, written by the producer
+
+    public ScanRingBuffer(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        chars = new char[capacity];
+        stamps = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    /** Producer side; returns false only if the consumer has fallen a full ring behind */
+    public boolean offer(char c, long nanos) {
+        long t = tail;
+        if (t - head == chars.length) return false;
+
+        int i = (int) (t & mask);
+        chars[i] = c;
+        stamps[i] = nanos;
+        tail = t + 1; // publishes the slot to the consumer
+        return true;
+    }
+
+    /** Consumer side; hands every available keystroke to the sink and returns how many there were */
+    public int drain(Sink sink) {
+        long h = head;
+        long t = tail;
+        for (long p = h; p < t; p++) {
+            int i = (int) (p & mask);
+            sink.accept(chars[i], stamps[i]);
+        }
+        head = t; // frees the slots for the producer
+        return (int) (t - h);
+    }
+
+    public boolean isEmpty() {
+        return head == tail;
+    }
+}
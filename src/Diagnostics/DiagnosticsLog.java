@@ -0,0 +1,71 @@
+package Diagnostics;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Small rolling log for stall reports and latency dumps, meant to be pulled
+ * off the kiosk for after-action reviews. When the file passes its size
+ * limit it is shifted to .1, .2, ... and the oldest copy is dropped.
+ */
+public class DiagnosticsLog {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    private final File file;
+    private final long maxBytes;
+    private final int keep;
+
+    public DiagnosticsLog(File file, long maxBytes, int keep) {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.keep = keep;
+    }
+
+    public static DiagnosticsLog fromSystemProperties() {
+        return new DiagnosticsLog(new File(System.getProperty("cco.diagnosticsFile", "cco_diagnostics.log")),
+                Long.getLong("cco.diagnosticsMaxBytes", 1024 * 1024), 5);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /** Appends a timestamped entry; never throws, since diagnostics must not break the kiosk */
+    public synchronized void write(String title, String body) {
+        try {
+            if (file.length() > maxBytes) roll();
+
+            try (PrintWriter writer = new PrintWriter(new FileWriter(file, true))) {
+                writer.println("=== " + LocalDateTime.now().format(TIMESTAMP) + " " + title);
+                if (body != null && !body.isEmpty()) writer.println(body);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void roll() {
+        File oldest = rolled(keep);
+        if (oldest.exists() && !oldest.delete()) {
+            System.err.println("Could not delete " + oldest);
+        }
+        for (int i = keep - 1; i >= 1; i--) {
+            File from = rolled(i);
+            if (from.exists() && !from.renameTo(rolled(i + 1))) {
+                System.err.println("Could not roll " + from);
+            }
+        }
+        if (!file.renameTo(rolled(1))) {
+            System.err.println("Could not roll " + file);
+        }
+    }
+
+    private File rolled(int index) {
+        return new File(file.getPath() + "." + index);
+    }
+}
@@ -0,0 +1,95 @@
+package Diagnostics;
+
+import java.awt.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes a heartbeat through the Swing event queue and reports when the EDT
+ * does not answer within the stall threshold. On a stall the EDT's stack is
+ * captured while it is still stuck, and the total freeze time is logged once
+ * it recovers. Only one heartbeat is in flight at a time, so a frozen EDT
+ * does not pile up events.
+ */
+public class EdtWatchdog {
+
+    private final long heartbeatMillis;
+    private final long stallNanos;
+    private final DiagnosticsLog log;
+    private final LatencyHistogram heartbeats = Latency.histogram(Latency.EDT_HEARTBEAT);
+    private final LatencyHistogram stalls = Latency.histogram(Latency.EDT_STALL);
+
+    private volatile Thread edt;
+    private volatile long answeredSeq = 0;
+    private long postedSeq = 0;
+    private Thread thread;
+
+    public EdtWatchdog(long heartbeatMillis, long stallMillis, DiagnosticsLog log) {
+        this.heartbeatMillis = heartbeatMillis;
+        this.stallNanos = TimeUnit.MILLISECONDS.toNanos(stallMillis);
+        this.log = log;
+    }
+
+    /** Reads cco.edtHeartbeatMs (default 100) and cco.edtStallMs (default 500) */
+    public static EdtWatchdog fromSystemProperties(DiagnosticsLog log) {
+        return new EdtWatchdog(Long.getLong("cco.edtHeartbeatMs", 100), Long.getLong("cco.edtStallMs", 500), log);
+    }
+
+    public synchronized void start() {
+        if (thread != null) return;
+
+        thread = new Thread(this::run, "edt-watchdog");
+        thread.setDaemon(true);
+        thread.start();
+        System.out.println("EDT watchdog started (stall threshold " + TimeUnit.NANOSECONDS.toMillis(stallNanos) + " ms)");
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                long seq = ++postedSeq;
+                long posted = System.nanoTime();
+                EventQueue.invokeLater(() -> {
+                    edt = Thread.currentThread();
+                    heartbeats.recordSince(posted);
+                    answeredSeq = seq;
+                });
+
+                boolean stalled = false;
+                while (answeredSeq != seq) {
+                    Thread.sleep(Math.max(1, heartbeatMillis / 4));
+                    if (!stalled && System.nanoTime() - posted > stallNanos) {
+                        stalled = true;
+                        reportStall(posted);
+                    }
+                }
+
+                if (stalled) {
+                    long frozen = System.nanoTime() - posted;
+                    stalls.record(frozen);
+                    log.write("EDT recovered after " + TimeUnit.NANOSECONDS.toMillis(frozen) + " ms", null);
+                }
+                Thread.sleep(heartbeatMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void reportStall(long posted) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - posted);
+        Thread stuck = edt;
+
+        StringBuilder sb = new StringBuilder();
+        if (stuck == null) {
+            sb.append("  (EDT has not answered a heartbeat yet)");
+        } else {
+            sb.append("  \"").append(stuck.getName()).append("\" ").append(stuck.getState());
+            for (StackTraceElement frame : stuck.getStackTrace()) {
+                sb.append("\n    at ").append(frame);
+            }
+        }
+
+        System.err.println("EDT stalled for " + millis + " ms, stack written to " + log.getFile().getName());
+        log.write("EDT stalled for " + millis + " ms", sb.toString());
+    }
+}
@@ -0,0 +1,54 @@
+package Diagnostics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/** Named end-to-end latency histograms, periodically dumped to the diagnostics log */
+public final class Latency {
+
+    public static final String SCAN_TO_BUBBLE = "scan-to-bubble";
+    public static final String PIN_TO_ROSTER_ROW = "pin-to-roster-row";
+    public static final String SIGN_OUT_TO_DURABLE = "sign-out-to-durable";
+    public static final String SIGN_IN_TO_DURABLE = "sign-in-to-durable";
+    public static final String EDT_HEARTBEAT = "edt-heartbeat";
+    public static final String EDT_STALL = "edt-stall";
+
+    private static final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService dumper;
+
+    private Latency() {}
+
+    public static LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, LatencyHistogram::new);
+    }
+
+    /** Records the time elapsed since a System.nanoTime() start */
+    public static void record(String name, long startNanos) {
+        histogram(name).recordSince(startNanos);
+    }
+
+    /** Writes every histogram to the log and starts a new interval */
+    public static void dump(DiagnosticsLog log) {
+        StringBuilder sb = new StringBuilder();
+        histograms.values().stream()
+                .sorted((a, b) -> a.getName().compareTo(b.getName()))
+                .forEach(h -> sb.append(h.drainSummary()).append('\n'));
+        log.write("Latency histograms", sb.toString().trim());
+    }
+
+    /** Dumps every period and once more at shutdown */
+    public static synchronized void startDumping(DiagnosticsLog log, long periodSeconds) {
+        if (dumper != null) return;
+
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "latency-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> dump(log), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> dump(log), "latency-dump-shutdown"));
+    }
+}
@@ -0,0 +1,93 @@
+package Diagnostics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear latency histogram with microsecond resolution. Each
+ * power of two is split into 8 sub-buckets, so percentiles are within 12.5%
+ * of the true value. Recording is a single atomic increment.
+ */
+public class LatencyHistogram {
+
+    private static final int LINEAR = 16;         // values below 16 us get their own bucket
+    private static final int SUB_BUCKETS = 8;
+    private static final int MAX_EXPONENT = 40;   // about 12 days in microseconds
+    private static final int BUCKETS = LINEAR + (MAX_EXPONENT - 3) * SUB_BUCKETS;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void record(long nanos) {
+        counts.incrementAndGet(bucketOf(Math.max(0, nanos / 1000)));
+    }
+
+    /** Records the time elapsed since a System.nanoTime() start */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /** Summarizes everything recorded since the last drain and resets the counts */
+    public String drainSummary() {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.getAndSet(i, 0);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return String.format("%-22s count=0", name);
+        }
+
+        int max = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (snapshot[i] > 0) max = i;
+        }
+        return String.format("%-22s count=%d p50=%s p90=%s p99=%s p999=%s max=%s", name, total,
+                format(percentile(snapshot, total, 0.50)), format(percentile(snapshot, total, 0.90)),
+                format(percentile(snapshot, total, 0.99)), format(percentile(snapshot, total, 0.999)),
+                format(upperBound(max)));
+    }
+
+    private static long percentile(long[] snapshot, long total, double p) {
+        long rank = (long) Math.ceil(total * p);
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return upperBound(i);
+        }
+        return upperBound(snapshot.length - 1);
+    }
+
+    private static int bucketOf(long micros) {
+        if (micros < LINEAR) return (int) micros;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent >= MAX_EXPONENT) return BUCKETS - 1;
+        int sub = (int) (micros >>> (exponent - 3)) & (SUB_BUCKETS - 1);
+        return LINEAR + (exponent - 4) * SUB_BUCKETS + sub;
+    }
+
+    /** Largest value, in microseconds, that falls in the bucket */
+    private static long upperBound(int bucket) {
+        if (bucket < LINEAR) return bucket;
+
+        int exponent = (bucket - LINEAR) / SUB_BUCKETS + 4;
+        int sub = (bucket - LINEAR) % SUB_BUCKETS;
+        long width = 1L << (exponent - 3);
+        return (1L << exponent) + (sub + 1) * width - 1;
+    }
+
+    private static String format(long micros) {
+        if (micros < 1000) return micros + "us";
+        if (micros < 1_000_000) return String.format("%.1fms", micros / 1000.0);
+        return String.format("%.2fs", micros / 1_000_000.0);
+    }
+}
@@ -0,0 +1,30 @@
+package Directory;
+
+/** One entry of the personnel directory; empty strings where the file left a column blank */
+public class Person {
+
+    private final long cardId;
+    private final String name;
+    private final String platoon;
+    private final String room;
+    private final String phone;
+
+    Person(long cardId, String name, String platoon, String room, String phone) {
+        this.cardId = cardId;
+        this.name = name;
+        this.platoon = platoon;
+        this.room = room;
+        this.phone = phone;
+    }
+
+    public long getCardId() { return cardId; }
+    public String getName() { return name; }
+    public String getPlatoon() { return platoon; }
+    public String getRoom() { return room; }
+    public String getPhone() { return phone; }
+
+    @Override
+    public String toString() {
+        return name + " (" + platoon + ", room " + room + ")";
+    }
+}
@@ -0,0 +1,160 @@
+package Directory;
+
+import Storage.CsvReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Who a card belongs to, loaded from a "CardId,Name,Platoon,Room,Phone" CSV
+ * next to user_pins.txt; the card ID is the numeric DoD ID read from the scan.
+ * IDs sit in an open-addressing table of longs that points into one packed
+ * char array of rows, so thousands of people cost a handful of arrays rather
+ * than an object each. A Person is built on lookup, and the most recently
+ * scanned are kept in a small LRU. Immutable once loaded, apart from the LRU.
+ */
+public class PersonnelDirectory {
+
+    public static final String FILE_NAME = "personnel.csv";
+
+    private static final char FIELD_SEPARATOR = '\u001F';
+    private static final long EMPTY = 0;
+
+    private final long[] keys;
+    private final int[] rowOfSlot;
+    private final int mask;
+    private final char[] pool;
+    private final int[] rowStarts;
+    private final int size;
+    private final Map<Long, Person> recent;
+
+    private PersonnelDirectory(long[] ids, char[] pool, int[] rowStarts, int count, int cacheSize) {
+        this.pool = pool;
+        this.rowStarts = rowStarts;
+
+        // At most half full, so a probe rarely goes past the first slot
+        int capacity = Integer.highestOneBit(Math.max(8, count) * 2 - 1) << 1;
+        keys = new long[capacity];
+        rowOfSlot = new int[capacity];
+        mask = capacity - 1;
+        int distinct = 0;
+        for (int row = 0; row < count; row++) {
+            int slot = slotOf(ids[row]);
+            if (keys[slot] == EMPTY) distinct++;
+            // A card listed twice keeps its last row
+            keys[slot] = ids[row];
+            rowOfSlot[slot] = row;
+        }
+        size = distinct;
+
+        recent = new LinkedHashMap<>(cacheSize * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Person> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /** A directory with no one in it */
+    public static PersonnelDirectory empty() {
+        return new PersonnelDirectory(new long[0], new char[0], new int[1], 0, 1);
+    }
+
+    public static PersonnelDirectory load(File file) {
+        return load(file, Integer.getInteger("cco.directoryCacheSize", 64));
+    }
+
+    public static PersonnelDirectory load(File file, int cacheSize) {
+        if (!file.exists()) {
+            System.out.println("Personnel directory not found: " + file.getAbsolutePath());
+            return empty();
+        }
+
+        long start = System.nanoTime();
+        long[][] ids = {new long[1024]};
+        int[][] rowStarts = {new int[1025]};
+        int[] count = {0};
+        StringBuilder pool = new StringBuilder(64 * 1024);
+        try {
+            new CsvReader().read(file, (rowIndex, fields) -> {
+                long id = fields.count() < 2 ? -1 : fields.getLong(0, -1);
+                if (id <= 0) {
+                    // The header, or a row with no usable card ID
+                    if (rowIndex > 0) System.out.println("Invalid line in personnel directory: row " + (rowIndex + 1));
+                    return;
+                }
+
+                int row = count[0]++;
+                if (row == ids[0].length) {
+                    ids[0] = Arrays.copyOf(ids[0], row * 2);
+                    rowStarts[0] = Arrays.copyOf(rowStarts[0], row * 2 + 1);
+                }
+                ids[0][row] = id;
+                rowStarts[0][row] = pool.length();
+                for (int field = 1; field <= 4; field++) {
+                    if (field > 1) pool.append(FIELD_SEPARATOR);
+                    if (field < fields.count()) pool.append(fields.getTrimmed(field));
+                }
+                rowStarts[0][row + 1] = pool.length();
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+            return empty();
+        }
+
+        char[] chars = new char[pool.length()];
+        pool.getChars(0, chars.length, chars, 0);
+        PersonnelDirectory directory = new PersonnelDirectory(ids[0], chars, rowStarts[0], count[0], Math.max(1, cacheSize));
+        System.out.println("Loaded " + directory.size() + " people from " + file.getName()
+                + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return directory;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** The person the card belongs to, or null if they are not in the directory */
+    public Person lookup(long cardId) {
+        if (cardId <= 0) return null;
+
+        synchronized (recent) {
+            Person person = recent.get(cardId);
+            if (person != null) return person;
+        }
+
+        int slot = slotOf(cardId);
+        if (keys[slot] != cardId) return null;
+        Person person = decode(cardId, rowOfSlot[slot]);
+        synchronized (recent) {
+            recent.put(cardId, person);
+        }
+        return person;
+    }
+
+    /** The slot holding the ID, or the empty slot where it would go */
+    private int slotOf(long id) {
+        int slot = (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private Person decode(long cardId, int row) {
+        String[] fields = new String[4];
+        int start = rowStarts[row];
+        int end = rowStarts[row + 1];
+        int field = 0;
+        for (int i = start; i <= end; i++) {
+            if (i == end || pool[i] == FIELD_SEPARATOR) {
+                fields[field++] = new String(pool, start, i - start);
+                start = i + 1;
+            }
+        }
+        return new Person(cardId, fields[0], fields[1], fields[2], fields[3]);
+    }
+}
@@ -0,0 +1,35 @@
+package Engine;
+
+import UIElements.SignOutRecord;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * People who signed out together under one PIN. Each member has a record of
+ * their own, so one can come back without touching the others; the party only
+ * remembers who from the group is still out.
+ */
+public class Party {
+
+    private final String id;
+    private final Set<SignOutRecord> out = new LinkedHashSet<>();
+
+    Party(String id) {
+        this.id = id;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    void add(SignOutRecord record) {
+        out.add(record);
+    }
+
+    /** Returns true once the last member is back */
+    boolean remove(SignOutRecord record) {
+        out.remove(record);
+        return out.isEmpty();
+    }
+}
@@ -0,0 +1,906 @@
+package Engine;
+
+import Storage.CsvDayView;
+import Storage.DayArchive;
+import Storage.JournalSnapshot;
+import Storage.PersistenceExecutor;
+import Storage.SignOutJournal;
+import UIElements.SignOutRecord;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The sign-out roster without any UI: owns the open records, the day's journal
+ * and CSV view, and day rollover. Every public method is thread-safe. Listeners
+ * are called while the engine lock is held, in the order changes happen, so
+ * they should only hand the event off (e.g. to the EDT).
+ *
+ * All file I/O runs on the persistence writer thread; persistence completions
+ * and load events arrive on the callback executor given at construction.
+ * Rollover is a job on its own thread, scheduled for local midnight: it waits
+ * for the new day's journal to be durable, then tells listeners once.
+ */
+public class RosterEngine implements Closeable {
+
+    public interface Listener {
+        void recordAdded(SignOutRecord record);
+
+        void recordRemoved(SignOutRecord record);
+
+        /** Several records signed in as one change, e.g. a formation coming back */
+        default void recordsRemoved(List<SignOutRecord> records) {
+            for (SignOutRecord record : records) {
+                recordRemoved(record);
+            }
+        }
+
+        /**
+         * Records still out at midnight were moved to the new day with a new sign-out time.
+         * The records themselves are given timeOut on the callback executor, just before
+         * any work a listener hands to it; until then, read the new time from timeOut.
+         */
+        default void dayRolledOver(LocalDate newDate, List<SignOutRecord> carriedOver, String timeOut) {}
+
+        /** A load or rollover write failed; sign-out and sign-in failures go to their completion instead */
+        default void persistenceFailed(IOException error) {}
+    }
+
+    /**
+     * Told about sign-outs and sign-ins made at this kiosk once they are durable,
+     * on the callback executor. Changes applied from peers are not reported.
+     */
+    public interface LocalChangeObserver {
+        void signedOut(SignOutRecord record);
+
+        void signedIn(SignOutRecord record);
+    }
+
+    /** People and groups out, read together with the version they reflect */
+    public static final class OpenCounts {
+        private final long version;
+        private final int heads;
+        private final int parties;
+
+        private OpenCounts(long version, int heads, int parties) {
+            this.version = version;
+            this.heads = heads;
+            this.parties = parties;
+        }
+
+        public long getVersion() { return version; }
+
+        /** People out, counting every name on a record that predates parties */
+        public int getHeads() { return heads; }
+
+        /** Groups out, counting each record signed out alone as its own group */
+        public int getParties() { return parties; }
+    }
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+    // The rollover job re-aims at least this often, in case the machine slept or its clock was changed
+    private static final long MAX_ROLLOVER_WAIT_MS = TimeUnit.HOURS.toMillis(1);
+    private static final long ROLLOVER_RETRY_MS = TimeUnit.SECONDS.toMillis(30);
+    // Sign-out time of records carried into a day the kiosk was off for at midnight
+    private static final String MIDNIGHT = "00:00:00";
+
+    private final File directory;
+    private final Clock clock;
+    private final PersistenceExecutor persistence;
+    private final String nodeId;
+    private final File snapshotFile;
+    private final int snapshotEvery;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Set<SignOutRecord> open = new LinkedHashSet<>();
+    // Every record seen today, open or signed in, by origin; keeps peer updates idempotent
+    private final Map<String, SignOutRecord> byOrigin = new LinkedHashMap<>();
+    // The groups people left in; each member is a record of their own, so a display name is never the key
+    private final Map<String, Party> openParties = new HashMap<>();
+    private int headsOut = 0;
+    private int partiesOut = 0;
+    private final CompletableFuture<Void> loaded = new CompletableFuture<>();
+    private volatile LocalChangeObserver localChangeObserver;
+    private long lastOriginStamp = 0;
+    private long arrivals = 0;
+    private volatile long version = 0;
+    private ScheduledExecutorService rolloverChecker;
+    private Thread shutdownHook;
+    private LocalDate currentDate;
+    private boolean closed = false;
+
+    // Owned by the persistence writer thread
+    private volatile File csvFile;
+    private SignOutJournal journal;
+    private LocalDate journalDate;
+    private CsvDayView csvView;
+    private boolean csvStale = false;
+
+    public RosterEngine(File directory, PersistenceExecutor persistence, Clock clock) {
+        this(directory, persistence, clock, defaultNodeId());
+    }
+
+    /** nodeId names this kiosk in record origins; it must differ between replicating kiosks */
+    public RosterEngine(File directory, PersistenceExecutor persistence, Clock clock, String nodeId) {
+        this.directory = directory;
+        this.persistence = persistence;
+        this.clock = clock;
+        this.nodeId = nodeId;
+        this.snapshotFile = new File(directory, JournalSnapshot.FILE_NAME);
+        this.snapshotEvery = Math.max(1, Integer.getInteger("cco.snapshotEvery", 256));
+    }
+
+    /** The cco.nodeId property, falling back to the host name */
+    private static String defaultNodeId() {
+        String nodeId = System.getProperty("cco.nodeId");
+        if (nodeId != null && !nodeId.isBlank()) return nodeId.trim();
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            return "kiosk";
+        }
+    }
+
+    /**
+     * Engine over the given directory, with the durability chosen by system properties.
+     * The callback executor must not run tasks inline: a completion that needs the
+     * engine lock would otherwise run on the writer while a full queue holds the lock.
+     */
+    public static RosterEngine fromSystemProperties(File directory, Executor callbackExecutor) {
+        return new RosterEngine(directory, PersistenceExecutor.fromSystemProperties(callbackExecutor), Clock.systemDefaultZone());
+    }
+
+    /** Engine for servers, benchmarks and load tests: completions and events run on a "roster-events" thread */
+    public static RosterEngine headless(File directory) {
+        return headless(directory, defaultNodeId());
+    }
+
+    /** Headless engine with an explicit node ID, e.g. for several replicating nodes in one process */
+    public static RosterEngine headless(File directory, String nodeId) {
+        Executor events = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "roster-events");
+            thread.setDaemon(true);
+            return thread;
+        });
+        return new RosterEngine(directory, PersistenceExecutor.fromSystemProperties(events), Clock.systemDefaultZone(), nodeId);
+    }
+
+    /** Loads today's records from the journal and starts watching for day rollover */
+    public synchronized void start() {
+        if (currentDate != null) return;
+
+        currentDate = LocalDate.now(clock);
+        loadFromJournal(currentDate);
+        archiveFinishedDays(currentDate);
+
+        rolloverChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "roster-rollover");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduleRollover();
+        System.out.println("Day rollover scheduled for midnight");
+
+        shutdownHook = new Thread(this::close, "persistence-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Registers a listener and returns the records currently out, so the caller
+     * can seed its view without missing or repeating an event.
+     */
+    public synchronized List<SignOutRecord> addListener(Listener listener) {
+        listeners.add(listener);
+        return new ArrayList<>(open);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Sets the observer of local changes and returns every record seen today,
+     * open or signed in, so a replicator can seed its outbox. Records still
+     * being written may be both in the snapshot and reported afterwards.
+     */
+    public synchronized List<SignOutRecord> setLocalChangeObserver(LocalChangeObserver observer) {
+        localChangeObserver = observer;
+        return getRecordsSeenToday();
+    }
+
+    /** Every record seen today, open or signed in, e.g. to bring a peer that fell behind up to date */
+    public synchronized List<SignOutRecord> getRecordsSeenToday() {
+        return new ArrayList<>(byOrigin.values());
+    }
+
+    /**
+     * Runs the task on the callback executor once today's journal has been loaded,
+     * including the records already signed in, which arrive after the open ones
+     */
+    public void whenLoaded(Runnable task) {
+        loaded.thenRun(task);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void signOut(SignOutRecord record) {
+        signOut(record, null);
+    }
+
+    /** Adds the record to the roster now; onPersisted runs on the callback executor once the write is durable */
+    public synchronized void signOut(SignOutRecord record, PersistenceExecutor.Completion onPersisted) {
+        if (open.contains(record)) return;
+
+        if (record.getOrigin() == null) {
+            record.setOrigin(nextOrigin());
+        }
+        addRecord(record, LocalTime.now(clock).format(TIME_FORMAT), error -> {
+            LocalChangeObserver observer = localChangeObserver;
+            if (error == null && observer != null) observer.signedOut(record);
+            if (onPersisted != null) onPersisted.done(error);
+        });
+    }
+
+    /**
+     * Signs out a group together: each member keeps a record of their own so
+     * they can come back separately, and all of them share one party ID. The
+     * records are written in one task; onPersisted runs once for the whole group.
+     */
+    public synchronized void signOutParty(List<SignOutRecord> members, PersistenceExecutor.Completion onPersisted) {
+        List<SignOutRecord> added = new ArrayList<>(members.size());
+        String party = members.size() > 1 ? nextOrigin() : null;
+        for (SignOutRecord record : members) {
+            if (open.contains(record)) continue;
+            if (record.getOrigin() == null) {
+                record.setOrigin(nextOrigin());
+            }
+            record.setParty(party);
+            publishAdded(record);
+            added.add(record);
+        }
+
+        String timeOut = LocalTime.now(clock).format(TIME_FORMAT);
+        persistence.submit(() -> {
+            for (SignOutRecord record : added) {
+                journal.appendSignOut(record, timeOut);
+                appendToCSV(record, timeOut);
+            }
+            snapshotIfDue();
+            return journal;
+        }, error -> {
+            LocalChangeObserver observer = localChangeObserver;
+            if (error == null && observer != null) {
+                for (SignOutRecord record : added) {
+                    observer.signedOut(record);
+                }
+            }
+            if (onPersisted != null) onPersisted.done(error);
+        });
+    }
+
+    /**
+     * Adds a record signed out at another kiosk. Returns false, changing nothing,
+     * if a record with the same origin has already been seen today.
+     */
+    public synchronized boolean applyRemoteSignOut(SignOutRecord record, String timeOut) {
+        if (record.getOrigin() == null || byOrigin.containsKey(record.getOrigin())) return false;
+
+        addRecord(record, timeOut, null);
+        return true;
+    }
+
+    private void addRecord(SignOutRecord record, String timeOut, PersistenceExecutor.Completion onPersisted) {
+        publishAdded(record);
+
+        persistence.submit(() -> {
+            journal.appendSignOut(record, timeOut);
+            appendToCSV(record, timeOut);
+            snapshotIfDue();
+            return journal;
+        }, onPersisted);
+    }
+
+    private void publishAdded(SignOutRecord record) {
+        open.add(record);
+        record.setArrival(arrivals++);
+        index(record);
+        version++;
+        byOrigin.put(record.getOrigin(), record);
+        for (Listener listener : listeners) {
+            listener.recordAdded(record);
+        }
+    }
+
+    private void index(SignOutRecord record) {
+        headsOut += record.getHeadCount();
+        if (record.getParty() == null) {
+            partiesOut++;
+            return;
+        }
+        Party party = openParties.get(record.getParty());
+        if (party == null) {
+            party = new Party(record.getParty());
+            openParties.put(party.getId(), party);
+            partiesOut++;
+        }
+        party.add(record);
+    }
+
+    private void unindex(SignOutRecord record) {
+        headsOut -= record.getHeadCount();
+        if (record.getParty() == null) {
+            partiesOut--;
+            return;
+        }
+        Party party = openParties.get(record.getParty());
+        if (party != null && party.remove(record)) {
+            openParties.remove(party.getId());
+            partiesOut--;
+        }
+    }
+
+    /** A new origin for a record signed out here; stamps are unique per node as long as the clock moves forward */
+    private String nextOrigin() {
+        lastOriginStamp = Math.max(clock.millis(), lastOriginStamp + 1);
+        return nodeId + ":" + Long.toString(lastOriginStamp, 36);
+    }
+
+    public boolean signIn(SignOutRecord record, String time) {
+        return signIn(record, time, null);
+    }
+
+    /** Removes the record from the roster now; returns false if it was not signed out */
+    public synchronized boolean signIn(SignOutRecord record, String time, PersistenceExecutor.Completion onPersisted) {
+        if (!open.contains(record)) return false;
+
+        removeRecord(record, time, journalTime(time), error -> {
+            LocalChangeObserver observer = localChangeObserver;
+            if (error == null && observer != null) observer.signedIn(record);
+            if (onPersisted != null) onPersisted.done(error);
+        });
+        return true;
+    }
+
+    /**
+     * Signs in several records as one change: listeners hear about them once,
+     * the version moves once, and every sign-in is written in a single task and
+     * flush. Records no longer out are skipped. Returns the records signed in.
+     */
+    public synchronized List<SignOutRecord> signInAll(List<SignOutRecord> records, String time,
+                                                      PersistenceExecutor.Completion onPersisted) {
+        List<SignOutRecord> removed = new ArrayList<>(records.size());
+        for (SignOutRecord record : records) {
+            if (!open.remove(record)) continue;
+            unindex(record);
+            record.setTimeSignedIn(time);
+            removed.add(record);
+        }
+        if (removed.isEmpty()) return removed;
+
+        version++;
+        for (Listener listener : listeners) {
+            listener.recordsRemoved(removed);
+        }
+
+        String timeIn = journalTime(time);
+        persistence.submit(() -> {
+            journal.appendSignIns(removed, timeIn);
+            for (SignOutRecord record : removed) {
+                updateTimeInCSV(record, timeIn);
+            }
+            snapshotIfDue();
+            return journal;
+        }, error -> {
+            LocalChangeObserver observer = localChangeObserver;
+            if (error == null && observer != null) {
+                for (SignOutRecord record : removed) {
+                    observer.signedIn(record);
+                }
+            }
+            if (onPersisted != null) onPersisted.done(error);
+        });
+        return removed;
+    }
+
+    /**
+     * The HH:mm:ss the journal and CSV keep for a sign-in at the given time
+     * ("HH:mm:ss" or "yyyy-MM-dd HH:mm:ss"); the clock's time if it is neither
+     */
+    private String journalTime(String time) {
+        if (time != null && time.length() >= 8) {
+            try {
+                return LocalTime.parse(time.substring(time.length() - 8), TIME_FORMAT).format(TIME_FORMAT);
+            } catch (DateTimeParseException e) {
+                // Fall through to the clock
+            }
+        }
+        return LocalTime.now(clock).format(TIME_FORMAT);
+    }
+
+    /** Signs in a record at another kiosk's request; returns false if no such record is out */
+    public synchronized boolean applyRemoteSignIn(String origin, String time, String timeIn) {
+        SignOutRecord record = byOrigin.get(origin);
+        if (record == null || !open.contains(record)) return false;
+
+        removeRecord(record, time, timeIn, null);
+        return true;
+    }
+
+    private void removeRecord(SignOutRecord record, String time, String timeIn, PersistenceExecutor.Completion onPersisted) {
+        open.remove(record);
+        unindex(record);
+        version++;
+        record.setTimeSignedIn(time);
+        for (Listener listener : listeners) {
+            listener.recordRemoved(record);
+        }
+
+        persistence.submit(() -> {
+            journal.appendSignIn(record, timeIn);
+            updateTimeInCSV(record, timeIn);
+            snapshotIfDue();
+            return journal;
+        }, onPersisted);
+    }
+
+    /** True if a record with this origin has been seen today, open or signed in */
+    public synchronized boolean isKnown(String origin) {
+        return byOrigin.containsKey(origin);
+    }
+
+    /** Snapshot of the records currently out, in sign-out order */
+    public synchronized List<SignOutRecord> getOpenRecords() {
+        return new ArrayList<>(open);
+    }
+
+    /**
+     * Counts changes to the open records, so readers can cache whatever they derive
+     * from them. Listeners see it already incremented for the change they are told about.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /** Adds the records currently out to the list and returns the counts and version they reflect */
+    public synchronized OpenCounts snapshotOpenRecords(List<SignOutRecord> into) {
+        into.addAll(open);
+        return getOpenCounts();
+    }
+
+    public synchronized OpenCounts getOpenCounts() {
+        return new OpenCounts(version, headsOut, partiesOut);
+    }
+
+    public synchronized int getOpenCount() {
+        return open.size();
+    }
+
+    public synchronized boolean isOpen(SignOutRecord record) {
+        return open.contains(record);
+    }
+
+    public synchronized LocalDate getCurrentDate() {
+        return currentDate;
+    }
+
+    /** The CSV view file for the current day */
+    public File getCurrentCSVFile() {
+        return csvFile;
+    }
+
+    /** Stops checking for day rollover without closing the journal */
+    public synchronized void stopRolloverChecks() {
+        if (rolloverChecker != null) {
+            rolloverChecker.shutdownNow();
+            rolloverChecker = null;
+            System.out.println("Day rollover monitoring stopped");
+        }
+    }
+
+    /** Schedules the rollover job for the next local midnight */
+    private synchronized void scheduleRollover() {
+        if (closed || rolloverChecker == null) return;
+
+        ZonedDateTime now = ZonedDateTime.now(clock);
+        ZonedDateTime midnight = now.toLocalDate().plusDays(1).atStartOfDay(now.getZone());
+        long delay = Math.min(Duration.between(now, midnight).toMillis(), MAX_ROLLOVER_WAIT_MS);
+        if (currentDate != null && !now.toLocalDate().equals(currentDate)) {
+            // A rollover that failed is retried soon, not at the next midnight
+            delay = ROLLOVER_RETRY_MS;
+        }
+        rolloverChecker.schedule(this::runRollover, Math.max(0, delay), TimeUnit.MILLISECONDS);
+    }
+
+    /** The rollover job: rolls over if the date has changed, then schedules itself again */
+    private void runRollover() {
+        try {
+            LocalDate today = LocalDate.now(clock);
+            if (!today.equals(getCurrentDate())) {
+                rollOver(today);
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        } finally {
+            scheduleRollover();
+        }
+    }
+
+    /**
+     * Moves everyone still out into the new day. The new day's journal is written
+     * whole on the writer thread (see SignOutJournal.writeCarriedOver) while this
+     * job waits; the engine only switches days, and listeners are only told, once
+     * the writer has switched to it. If the writer could not, the old day stays
+     * current, untouched, and the job tries again shortly.
+     */
+    private void rollOver(LocalDate newDate) {
+        List<SignOutRecord> carriedOver;
+        Set<String> finishedOrigins;
+        String rolloverTime;
+        boolean[] switched = {false};
+        CompletableFuture<IOException> written = new CompletableFuture<>();
+
+        synchronized (this) {
+            if (closed) return;
+            System.out.println("Day rollover detected: " + currentDate + " -> " + newDate);
+
+            carriedOver = new ArrayList<>(open);
+            finishedOrigins = new HashSet<>(byOrigin.keySet());
+            rolloverTime = LocalTime.now(clock).format(TIME_FORMAT);
+            LocalDate finishedDate = currentDate;
+
+            persistence.submit(() -> {
+                List<Long> ids = new ArrayList<>();
+                if (!carriedOver.isEmpty()) {
+                    System.out.println("Found " + carriedOver.size() + " people still signed out, transferring to new day");
+                    ids = SignOutJournal.writeCarriedOver(journalFileFor(newDate), carriedOver, rolloverTime);
+                } else {
+                    System.out.println("New day started with no one signed out");
+                }
+
+                // Finalize yesterday's CSV view, marking who went on to today, then archive it for history
+                csvView.rebuildFinished(journal.replay());
+                csvStale = false;
+                archiveDay(csvFile, finishedDate);
+
+                openJournal(newDate);
+                switched[0] = true;
+                // Sign-ins queued behind this task are journaled in the new day, under the new IDs
+                for (int i = 0; i < carriedOver.size(); i++) {
+                    carriedOver.get(i).setId(ids.get(i));
+                }
+                writeSnapshot();
+                csvStale = true;
+                regenerateCSV();
+                return journal;
+            }, written::complete);
+        }
+
+        IOException error;
+        try {
+            error = written.get();
+        } catch (InterruptedException e) {
+            // Stopped while waiting; the write still completes on the writer thread
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            error = new IOException(e.getCause());
+        }
+
+        if (!switched[0]) {
+            System.err.println("Day rollover to " + newDate + " failed; keeping " + getCurrentDate() + " and retrying");
+            firePersistenceFailed(error);
+            return;
+        }
+
+        synchronized (this) {
+            currentDate = newDate;
+            // Only carried-over records, and changes made since the rollover began, are known to the new day
+            for (SignOutRecord record : carriedOver) {
+                finishedOrigins.remove(record.getOrigin());
+            }
+            byOrigin.keySet().removeAll(finishedOrigins);
+
+            // Records are owned by the callback thread (the EDT under the UI), which may be sorting by this time
+            persistence.callback(() -> {
+                for (SignOutRecord record : carriedOver) {
+                    record.setTimeSignedOut(rolloverTime);
+                }
+            });
+            List<SignOutRecord> stillOut = new ArrayList<>(carriedOver.size());
+            for (SignOutRecord record : carriedOver) {
+                if (open.contains(record)) stillOut.add(record);
+            }
+            version++;
+            for (Listener listener : listeners) {
+                listener.dayRolledOver(newDate, stillOut, rolloverTime);
+            }
+        }
+        firePersistenceFailed(error);
+    }
+
+    /**
+     * Restores the day's open records on the writer thread from the snapshot and
+     * the journal events after it, carrying in anyone left out by days the kiosk
+     * was off, then publishes them. The pass over the whole day, which rebuilds
+     * the CSV view and learns the records already signed in, comes afterwards,
+     * so the roster does not wait on it.
+     */
+    private void loadFromJournal(LocalDate date) {
+        List<SignOutRecord> restored = new ArrayList<>();
+        List<SignOutRecord> signedIn = new ArrayList<>();
+
+        persistence.submit(() -> {
+            IOException reconcileError = null;
+            try {
+                reconcileMissedRollovers(date);
+            } catch (IOException e) {
+                reconcileError = e;
+            }
+
+            openJournal(date);
+            restored.addAll(journal.openRecords());
+            if (journal.eventsSinceSnapshot() > 0) {
+                writeSnapshot();
+            }
+            // Today still opens; the failure is reported once it has
+            if (reconcileError != null) throw reconcileError;
+            return null;
+        }, error -> {
+            synchronized (this) {
+                for (SignOutRecord record : restored) {
+                    if (!byOrigin.containsKey(originOf(record, date)) && open.add(record)) {
+                        record.setArrival(arrivals++);
+                        index(record);
+                        byOrigin.put(record.getOrigin(), record);
+                        version++;
+                        for (Listener listener : listeners) {
+                            listener.recordAdded(record);
+                        }
+                    }
+                }
+            }
+            firePersistenceFailed(error);
+        });
+
+        // The journal is the source of truth; rewrite the view in case the last session crashed
+        persistence.submit(() -> {
+            List<SignOutRecord> day = journal.replay();
+            for (SignOutRecord record : day) {
+                if (record.getTimeSignedIn() != null && !record.getTimeSignedIn().isEmpty()) {
+                    signedIn.add(record);
+                }
+            }
+            csvStale = true;
+            csvView.rebuild(day);
+            csvStale = false;
+            return null;
+        }, error -> {
+            synchronized (this) {
+                for (SignOutRecord record : signedIn) {
+                    byOrigin.putIfAbsent(originOf(record, date), record);
+                }
+            }
+            firePersistenceFailed(error);
+            loaded.complete(null);
+        });
+    }
+
+    /** Names records journaled before replication existed after their journal ID, and returns the origin */
+    private String originOf(SignOutRecord record, LocalDate date) {
+        if (record.getOrigin() == null) {
+            record.setOrigin(nodeId + ":" + date.format(DateTimeFormatter.BASIC_ISO_DATE) + "-" + record.getId());
+        }
+        return record.getOrigin();
+    }
+
+    /**
+     * Carries the records still out at the end of the last day the kiosk ran
+     * through every day since, as the midnight rollovers would have; writer thread
+     * only. Once today has a journal there is nothing to do, so an interrupted
+     * reconcile simply resumes from the last day it finished.
+     */
+    private void reconcileMissedRollovers(LocalDate today) throws IOException {
+        LocalDate last = SignOutJournal.latestDay(directory, today);
+        if (last == null || last.equals(today)) return;
+
+        List<SignOutRecord> carried;
+        try (SignOutJournal lastJournal = new SignOutJournal(journalFileFor(last), JournalSnapshot.read(snapshotFile))) {
+            carried = lastJournal.openRecords();
+        }
+        // The last day's view may be stale if the kiosk lost power; the archiver picks it up next
+        rebuildFinishedCSV(last);
+        if (carried.isEmpty()) return;
+
+        System.out.println("Missed day rollover: carrying " + carried.size() + " people from " + last + " to " + today);
+        for (LocalDate day = last.plusDays(1); !day.isAfter(today); day = day.plusDays(1)) {
+            SignOutJournal.writeCarriedOver(journalFileFor(day), carried, MIDNIGHT);
+            if (day.isBefore(today)) {
+                rebuildFinishedCSV(day);
+            }
+        }
+    }
+
+    /** Rewrites a finished day's CSV view from its journal; writer thread only */
+    private void rebuildFinishedCSV(LocalDate day) throws IOException {
+        try (SignOutJournal dayJournal = new SignOutJournal(journalFileFor(day));
+             CsvDayView view = new CsvDayView(csvFileFor(day))) {
+            view.rebuildFinished(dayJournal.replay());
+        }
+    }
+
+    /** Saves a snapshot once enough events have been journaled since the last one; writer thread only */
+    private void snapshotIfDue() {
+        if (journal.eventsSinceSnapshot() >= snapshotEvery) {
+            writeSnapshot();
+        }
+    }
+
+    private void writeSnapshot() {
+        try {
+            journal.writeSnapshot(snapshotFile, journalDate);
+        } catch (IOException e) {
+            // Startup falls back to replaying the whole journal
+            System.err.println("Could not write snapshot: " + e.getMessage());
+        }
+    }
+
+    /** Converts a finished day's CSV into a columnar archive; writer thread only */
+    private void archiveDay(File csv, LocalDate date) {
+        if (csv == null || !csv.exists()) return;
+        try {
+            DayArchive.archive(csv, directory, date);
+            System.out.println("Archived " + csv.getName());
+        } catch (IOException e) {
+            // History falls back to the CSV, and the next start retries
+            System.err.println("Could not archive " + csv.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /** Archives earlier days that have no current archive, e.g. from before archiving existed */
+    private void archiveFinishedDays(LocalDate today) {
+        persistence.submit(() -> {
+            int archived = DayArchive.archiveMissing(directory, today);
+            if (archived > 0) {
+                System.out.println("Archived " + archived + " finished day files");
+            }
+            return null;
+        });
+    }
+
+    private void firePersistenceFailed(IOException error) {
+        if (error == null) return;
+        for (Listener listener : listeners) {
+            listener.persistenceFailed(error);
+        }
+    }
+
+    /** Returns the CSV view file for the given day */
+    private File csvFileFor(LocalDate date) {
+        return new File(directory, "CCO_SIGNOUTS_" + date.format(DateTimeFormatter.ofPattern("yyyy_MM_dd")) + ".csv");
+    }
+
+    private File journalFileFor(LocalDate date) {
+        return new File(directory, SignOutJournal.fileFor(date).getName());
+    }
+
+    /**
+     * Opens the journal for the given day, from the snapshot if it is that day's, and
+     * seeds it from a pre-journal CSV if needed; writer thread only
+     */
+    /** Switches the writer to the day's journal and CSV view; if either cannot be opened, the current ones stay open */
+    private void openJournal(LocalDate date) throws IOException {
+        File csv = csvFileFor(date);
+        SignOutJournal opened = new SignOutJournal(journalFileFor(date), JournalSnapshot.read(snapshotFile));
+        CsvDayView view;
+        try {
+            opened.importCSV(csv);
+            view = new CsvDayView(csv);
+        } catch (IOException | RuntimeException e) {
+            opened.close();
+            throw e;
+        }
+
+        SignOutJournal previous = journal;
+        CsvDayView previousView = csvView;
+        journal = opened;
+        journalDate = date;
+        csvFile = csv;
+        csvView = view;
+        if (previous != null) {
+            previous.close();
+        }
+        if (previousView != null) {
+            previousView.close();
+        }
+    }
+
+    private void appendToCSV(SignOutRecord record, String timeOut) {
+        try {
+            csvView.append(record, timeOut);
+        } catch (IOException e) {
+            csvStale = true;
+            e.printStackTrace();
+        }
+    }
+
+    /** Patches the TimeIn column of the record's row in place, falling back to a rebuild */
+    private void updateTimeInCSV(SignOutRecord record, String timeIn) {
+        try {
+            if (!csvView.patchTimeIn(record.getId(), timeIn)) {
+                csvStale = true;
+                regenerateCSV();
+            }
+        } catch (IOException e) {
+            csvStale = true;
+            e.printStackTrace();
+        }
+    }
+
+    /** Rebuilds the day CSV and its row index from the journal if it is stale; writer thread only */
+    private void regenerateCSV() {
+        if (!csvStale || journal == null) return;
+
+        try {
+            csvView.rebuild(journal.replay());
+            csvStale = false;
+        } catch (IOException e) {
+            System.err.println("Error regenerating CSV view: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /** Drains pending writes, refreshes the CSV view and closes the journal */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+        stopRolloverChecks();
+        if (shutdownHook != null && Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // Already shutting down
+            }
+        }
+
+        persistence.submit(() -> {
+            regenerateCSV();
+            if (csvView != null) {
+                csvView.close();
+            }
+            if (journal != null) {
+                writeSnapshot();
+                journal.close();
+            }
+            return null;
+        });
+        persistence.close();
+    }
+}
@@ -1,11 +1,22 @@
+import Api.RosterApiServer;
+import Diagnostics.DiagnosticsLog;
+import Diagnostics.EdtWatchdog;
+import Diagnostics.Latency;
+import Engine.RosterEngine;
+import Replication.ReplicationNode;
 import UIElements.SignOutOptions;
-import UIElements.SignOutRecord;
 import UIElements.SignOutRoster;
 import UIElements.UITheme;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
 import java.awt.*;
 import java.awt.geom.RoundRectangle2D;
+import java.io.File;
+import java.io.IOException;
 
 public class MainWindow extends JFrame {
 
@@ -30,12 +41,15 @@ public class MainWindow extends JFrame {
 
         // --- Roster + Search Panel ---
         roster = new SignOutRoster(null);
+        startReplication();
+        startApi();
 
         JPanel rosterPanel = createModernPanel();
         rosterPanel.setLayout(new BorderLayout(0, UITheme.SPACING_LG));
         rosterPanel.setBorder(UITheme.createEmptyBorder(UITheme.PANEL_PADDING));
 
-        JTextField searchField = createModernTextField("Search by name...");
+        String searchPlaceholder = "Search name, location or phone...";
+        JTextField searchField = createModernTextField(searchPlaceholder);
         JButton searchButton = createModernButton("Search", UITheme.ACCENT_BLUE);
 
         JPanel searchPanel = new JPanel(new BorderLayout(UITheme.SPACING_MD, 0));
@@ -51,21 +65,60 @@ public class MainWindow extends JFrame {
         rosterPanel.add(searchPanel, BorderLayout.NORTH);
         rosterPanel.add(scrollPane, BorderLayout.CENTER);
 
-        // Search action
-        Runnable doSearch = () -> {
-            String query = searchField.getText().trim().toLowerCase();
-            if (query.isEmpty()) return;
-
-            ListModel<SignOutRecord> model = roster.getModel();
-            for (int i = 0; i < model.getSize(); i++) {
-                SignOutRecord rec = model.getElementAt(i);
-                if (rec.getName().toLowerCase().contains(query)) {
-                    roster.setSelectedIndex(i);
-                    roster.ensureIndexIsVisible(i);
-                    return;
-                }
+        // Heads out and overdue count, updated as the roster changes
+        JLabel headsLabel = new JLabel(" ");
+        headsLabel.setFont(UITheme.FONT_LIST_ITEM_DETAIL);
+        headsLabel.setForeground(UITheme.TEXT_SECONDARY);
+        JLabel overdueLabel = new JLabel(" ");
+        overdueLabel.setFont(UITheme.FONT_LIST_ITEM_DETAIL);
+        overdueLabel.setForeground(UITheme.STATUS_OVERDUE);
+        JPanel statusPanel = new JPanel(new BorderLayout());
+        statusPanel.setOpaque(false);
+        statusPanel.add(headsLabel, BorderLayout.WEST);
+        statusPanel.add(overdueLabel, BorderLayout.EAST);
+        rosterPanel.add(statusPanel, BorderLayout.SOUTH);
+
+        Runnable showHeads = () -> headsLabel.setText(headsOutText(roster.getEngine().getOpenCounts()));
+        showHeads.run();
+        roster.addRosterListener(new ListDataListener() {
+            @Override
+            public void intervalAdded(ListDataEvent e) { showHeads.run(); }
+
+            @Override
+            public void intervalRemoved(ListDataEvent e) { showHeads.run(); }
+
+            @Override
+            public void contentsChanged(ListDataEvent e) { showHeads.run(); }
+        });
+
+        roster.addOverdueListener((record, overdue) -> {
+            int count = roster.getOverdueCount();
+            overdueLabel.setText(count == 0 ? " " : count + (count == 1 ? " sign-out overdue" : " sign-outs overdue"));
+        });
+
+        // Live filter on every keystroke
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            private void update() {
+                String text = searchField.getText();
+                roster.setFilter(text.equals(searchPlaceholder) ? "" : text);
             }
 
+            @Override
+            public void insertUpdate(DocumentEvent e) { update(); }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) { update(); }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) { update(); }
+        });
+
+        // Search action jumps to the first match
+        Runnable doSearch = () -> {
+            if (roster.getFilter().isEmpty() || roster.getModel().getSize() == 0) return;
+
+            roster.setSelectedIndex(0);
+            roster.ensureIndexIsVisible(0);
         };
 
         searchButton.addActionListener(e -> doSearch.run());
@@ -215,6 +268,38 @@ public class MainWindow extends JFrame {
         return button;
     }
 
+    /** Shares sign-outs with the other kiosks if cco.replicationPort is set */
+    private void startReplication() {
+        try {
+            ReplicationNode replication = ReplicationNode.fromSystemProperties(roster.getEngine());
+            if (replication == null) return;
+            replication.start();
+        } catch (IOException e) {
+            e.printStackTrace();
+            showModernDialog("Could not start sharing with the other kiosks:\n" + e.getMessage(),
+                    "Replication Error", JOptionPane.WARNING_MESSAGE);
+        }
+    }
+
+    /** Serves the roster to the CQ and 1SG desks if cco.apiPort is set */
+    private void startApi() {
+        try {
+            RosterApiServer api = RosterApiServer.fromSystemProperties(roster.getEngine(), new File("."));
+            if (api != null) api.start();
+        } catch (IOException e) {
+            e.printStackTrace();
+            showModernDialog("Could not start the roster API:\n" + e.getMessage(),
+                    "API Error", JOptionPane.WARNING_MESSAGE);
+        }
+    }
+
+    /** e.g. "7 people out in 3 groups"; blank while no one is out */
+    private static String headsOutText(RosterEngine.OpenCounts counts) {
+        if (counts.getHeads() == 0) return " ";
+        return counts.getHeads() + (counts.getHeads() == 1 ? " person" : " people") + " out in "
+                + counts.getParties() + (counts.getParties() == 1 ? " group" : " groups");
+    }
+
     private void showModernDialog(String message, String title, int messageType) {
         JOptionPane optionPane = new JOptionPane(message, messageType);
         JDialog dialog = optionPane.createDialog(this, title);
@@ -229,6 +314,11 @@ public class MainWindow extends JFrame {
             e.printStackTrace();
         }
 
+        // Watch for EDT freezes and keep latency histograms for after-action reviews
+        DiagnosticsLog diagnostics = DiagnosticsLog.fromSystemProperties();
+        EdtWatchdog.fromSystemProperties(diagnostics).start();
+        Latency.startDumping(diagnostics, Long.getLong("cco.latencyDumpSeconds", 300));
+
         SwingUtilities.invokeLater(MainWindow::new);
     }
 }
\ No newline at end of file
@@ -0,0 +1,119 @@
+package Replication;
+
+import UIElements.SignOutRecord;
+
+/**
+ * A sign-out or sign-in made at one kiosk, as sent to its peers. Each kiosk
+ * numbers the events it originates; the record is named by its origin, so
+ * applying the same event twice changes nothing.
+ */
+public class ReplicationEvent {
+
+    public enum Type { SIGN_OUT, SIGN_IN }
+
+    private static final char SEPARATOR = '\t';
+    private static final char FAMILY_LEAVE_FLAG = 'F';
+    private static final char OVERNIGHT_LEAVE_FLAG = 'O';
+
+    private final long seq;
+    private final Type type;
+    private final String origin;
+    private final String time;
+    private final String names;
+    private final String location;
+    private final String phone;
+    private final boolean familyLeave;
+    private final boolean overnightLeave;
+    private final String party;
+
+    private ReplicationEvent(long seq, Type type, String origin, String time, String names, String location, String phone,
+                             boolean familyLeave, boolean overnightLeave, String party) {
+        this.seq = seq;
+        this.type = type;
+        this.origin = origin;
+        this.time = time;
+        this.names = names;
+        this.location = location;
+        this.phone = phone;
+        this.familyLeave = familyLeave;
+        this.overnightLeave = overnightLeave;
+        this.party = party;
+    }
+
+    public static ReplicationEvent signOut(long seq, SignOutRecord record) {
+        return new ReplicationEvent(seq, Type.SIGN_OUT, record.getOrigin(), record.getTimeSignedOut(),
+                record.getName(), record.getLocation(), record.getPhone(), record.isFamilyLeave(), record.isOvernightLeave(),
+                record.getParty());
+    }
+
+    public static ReplicationEvent signIn(long seq, SignOutRecord record) {
+        return new ReplicationEvent(seq, Type.SIGN_IN, record.getOrigin(), record.getTimeSignedIn(),
+                null, null, null, false, false, null);
+    }
+
+    public long getSeq() { return seq; }
+    public Type getType() { return type; }
+    public String getOrigin() { return origin; }
+    public String getTime() { return time; }
+
+    /** The HH:mm:ss part of the event time, as the journal and CSV store it */
+    public String getClockTime() {
+        return time.length() > 8 ? time.substring(time.length() - 8) : time;
+    }
+
+    /** The record a sign-out event describes, ready to apply to the local roster */
+    public SignOutRecord toRecord() {
+        SignOutRecord record = new SignOutRecord(names, location, phone, time, null);
+        record.setFamilyLeave(familyLeave);
+        record.setOvernightLeave(overnightLeave);
+        record.setOrigin(origin);
+        record.setParty(party);
+        return record;
+    }
+
+    /** Serializes the event as one line (without the trailing newline) */
+    public String toLine() {
+        StringBuilder sb = new StringBuilder(96);
+        sb.append(seq).append(SEPARATOR)
+                .append(type.name()).append(SEPARATOR)
+                .append(clean(origin)).append(SEPARATOR)
+                .append(clean(time));
+        if (type == Type.SIGN_OUT) {
+            sb.append(SEPARATOR).append(clean(names))
+                    .append(SEPARATOR).append(clean(location))
+                    .append(SEPARATOR).append(clean(phone))
+                    .append(SEPARATOR);
+            if (familyLeave) sb.append(FAMILY_LEAVE_FLAG);
+            if (overnightLeave) sb.append(OVERNIGHT_LEAVE_FLAG);
+            if (party != null) sb.append(SEPARATOR).append(clean(party));
+        }
+        return sb.toString();
+    }
+
+    /** Parses an event line, returning null if it is malformed */
+    public static ReplicationEvent fromLine(String line) {
+        String[] parts = line.split("\t", -1);
+        if (parts.length < 4 || parts[2].isEmpty()) return null;
+
+        try {
+            long seq = Long.parseLong(parts[0]);
+            Type type = Type.valueOf(parts[1]);
+
+            if (type == Type.SIGN_OUT) {
+                if (parts.length < 8) return null;
+                // Kiosks that predate parties send no party field
+                String party = parts.length > 8 && !parts[8].isEmpty() ? parts[8] : null;
+                return new ReplicationEvent(seq, type, parts[2], parts[3], parts[4], parts[5], parts[6],
+                        parts[7].indexOf(FAMILY_LEAVE_FLAG) >= 0, parts[7].indexOf(OVERNIGHT_LEAVE_FLAG) >= 0, party);
+            }
+            return new ReplicationEvent(seq, type, parts[2], parts[3], null, null, null, false, false, null);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String clean(String value) {
+        if (value == null) return "";
+        return value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+}
@@ -0,0 +1,645 @@
+package Replication;
+
+import Engine.RosterEngine;
+import UIElements.SignOutRecord;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongFunction;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Keeps this kiosk's roster in step with its peers over TCP. Sign-outs and
+ * sign-ins made here are numbered into an in-memory outbox; a sender thread per
+ * peer pushes the outbox to it, starting after the last event the peer says it
+ * has applied, so a peer that was unreachable catches up when it comes back.
+ * Events received from peers are applied to the engine by record origin, so
+ * duplicates are harmless.
+ *
+ * Protocol, one line per message:
+ *   sender:   HELLO node epoch, then EVENT line... and PING when idle
+ *   sender:   STATE line... then RESYNC seq, for a peer behind the outbox
+ *   receiver: RESUME seq node (last event from this sender's epoch it has applied)
+ *   receiver: ACK seq after each burst of events it has applied
+ * The epoch changes on every start and at day rollover, which makes peers resend
+ * from the first event. A HELLO with a new epoch also makes the receiver reconnect
+ * its own link to that peer at once, instead of waiting to notice the old one is
+ * dead. Events every peer has acknowledged are dropped from the outbox, and it
+ * never holds more than its limit: a peer that falls further behind, e.g. while
+ * it is unreachable, is sent today's records in full as STATE lines and carries
+ * on from the RESYNC point.
+ *
+ * Every line ends with an HMAC-SHA256 of the rest of it, keyed by the shared
+ * secret and bound to the sender's epoch, so only kiosks holding the secret can
+ * join, and a line from one run cannot be passed off in another. A HELLO older
+ * than the last epoch seen from that peer is refused, so a recorded one cannot
+ * be replayed. A line that fails a check drops the link.
+ */
+public class ReplicationNode implements RosterEngine.LocalChangeObserver, Closeable {
+
+    private static final int CONNECT_TIMEOUT_MS = 2000;
+    private static final int PING_INTERVAL_MS = 1000;
+    private static final int READ_TIMEOUT_MS = 5000;
+    private static final int RECONNECT_MIN_MS = 250;
+    private static final int RECONNECT_MAX_MS = 1000;
+    private static final int DEFAULT_OUTBOX_LIMIT = 10_000;
+
+    /** Last event applied from a peer's current run */
+    private static final class Cursor {
+        final long epoch;
+        long seq = 0;
+
+        Cursor(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+
+    /** Signs and checks one link's lines; a Mac is not thread-safe, so each link thread has its own */
+    private static final class Signer {
+        private final Mac mac;
+
+        Signer(SecretKeySpec key) {
+            try {
+                mac = Mac.getInstance(key.getAlgorithm());
+                mac.init(key);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private byte[] digest(String message, long epoch) {
+            mac.update(Long.toString(epoch).getBytes(StandardCharsets.US_ASCII));
+            mac.update((byte) '\n');
+            return mac.doFinal(message.getBytes(StandardCharsets.UTF_8));
+        }
+
+        String sign(String message, long epoch) {
+            return message + "\t" + Base64.getEncoder().withoutPadding().encodeToString(digest(message, epoch)) + "\n";
+        }
+
+        /** The line without its MAC, or null if the MAC is missing or wrong */
+        String verify(String line, long epoch) {
+            if (line == null) return null;
+            int tab = line.lastIndexOf('\t');
+            if (tab < 0) return null;
+            String message = line.substring(0, tab);
+            byte[] claimed;
+            try {
+                claimed = Base64.getDecoder().decode(line.substring(tab + 1));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            return MessageDigest.isEqual(claimed, digest(message, epoch)) ? message : null;
+        }
+    }
+
+    private final RosterEngine engine;
+    private final String nodeId;
+    private final InetAddress bindAddress;
+    private final int port;
+    private final SecretKeySpec key;
+    private final List<InetSocketAddress> peers;
+    private final int outboxLimit;
+
+    private final List<ReplicationEvent> outbox = new ArrayList<>(); // guarded by itself
+    private long epoch = System.currentTimeMillis(); // guarded by outbox
+    private long trimmed = 0; // guarded by outbox; the event at index i has seq trimmed + i + 1
+    private final long[] acked; // guarded by outbox; last seq of this epoch each peer has acknowledged
+    private final Object applyLock = new Object();
+    private final Map<String, Cursor> cursors = new HashMap<>(); // guarded by applyLock
+    private final Map<String, ReplicationEvent> pendingSignIns = new HashMap<>(); // guarded by applyLock
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+    private final Map<String, Socket> outbound = new ConcurrentHashMap<>();
+    private volatile boolean running = false;
+    private volatile long appliedCount = 0;
+    private ServerSocket server;
+
+    private final RosterEngine.Listener rollover = new RosterEngine.Listener() {
+        @Override
+        public void recordAdded(SignOutRecord record) {}
+
+        @Override
+        public void recordRemoved(SignOutRecord record) {}
+
+        @Override
+        public void dayRolledOver(LocalDate newDate, List<SignOutRecord> carriedOver, String timeOut) {
+            startNewEpoch();
+        }
+    };
+
+    public ReplicationNode(RosterEngine engine, InetAddress bindAddress, int port, List<InetSocketAddress> peers,
+                           byte[] secret) {
+        this(engine, bindAddress, port, peers, secret, DEFAULT_OUTBOX_LIMIT);
+    }
+
+    /** outboxLimit caps the events kept for peers; one further behind is resent today's records in full */
+    public ReplicationNode(RosterEngine engine, InetAddress bindAddress, int port, List<InetSocketAddress> peers,
+                           byte[] secret, int outboxLimit) {
+        if (secret == null || secret.length == 0) throw new IllegalArgumentException("replication needs a shared secret");
+        this.engine = engine;
+        this.nodeId = engine.getNodeId();
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.key = new SecretKeySpec(secret, "HmacSHA256");
+        this.peers = new ArrayList<>(peers);
+        this.acked = new long[peers.size()];
+        this.outboxLimit = Math.max(1, outboxLimit);
+    }
+
+    /**
+     * Node configured by cco.replicationPort, cco.peers ("host:port,host:port"),
+     * cco.replicationSecret and cco.replicationOutboxLimit, listening on
+     * cco.replicationBind (loopback unless set), or null if replication is not
+     * configured.
+     */
+    public static ReplicationNode fromSystemProperties(RosterEngine engine) throws IOException {
+        Integer port = Integer.getInteger("cco.replicationPort");
+        if (port == null) return null;
+
+        String secret = System.getProperty("cco.replicationSecret", "");
+        if (secret.isEmpty()) {
+            System.err.println("Replication is off: cco.replicationPort is set but cco.replicationSecret is not");
+            return null;
+        }
+        String bind = System.getProperty("cco.replicationBind");
+        InetAddress bindAddress = bind == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(bind);
+
+        List<InetSocketAddress> peers = new ArrayList<>();
+        for (String peer : System.getProperty("cco.peers", "").split(",")) {
+            peer = peer.trim();
+            if (peer.isEmpty()) continue;
+            int colon = peer.lastIndexOf(':');
+            if (colon < 0) {
+                System.err.println("Ignoring replication peer without a port: " + peer);
+                continue;
+            }
+            peers.add(InetSocketAddress.createUnresolved(peer.substring(0, colon), Integer.parseInt(peer.substring(colon + 1))));
+        }
+        return new ReplicationNode(engine, bindAddress, port, peers, secret.getBytes(StandardCharsets.UTF_8),
+                Integer.getInteger("cco.replicationOutboxLimit", DEFAULT_OUTBOX_LIMIT));
+    }
+
+    /** Starts accepting peers now, and sending to them once the engine has loaded the day */
+    public synchronized void start() throws IOException {
+        if (running) return;
+        running = true;
+
+        server = new ServerSocket(port, 50, bindAddress);
+        startThread("replication-accept", this::acceptPeers);
+        System.out.println("Replication node " + nodeId + " listening on " + bindAddress.getHostAddress() + ":" + server.getLocalPort());
+
+        engine.whenLoaded(() -> {
+            engine.addListener(rollover);
+            seedOutbox(engine.setLocalChangeObserver(this));
+            for (int i = 0; i < peers.size(); i++) {
+                InetSocketAddress peer = peers.get(i);
+                int index = i;
+                startThread("replication-to-" + peer.getHostString() + ":" + peer.getPort(), () -> sendTo(index));
+            }
+        });
+    }
+
+    /** The port peers connect to; useful when started on port 0 */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /** Number of events kept for peers that have not acknowledged them, at most the outbox limit */
+    public int getOutboxSize() {
+        synchronized (outbox) {
+            return outbox.size();
+        }
+    }
+
+    /** Number of peer events that changed the local roster */
+    public long getAppliedCount() {
+        return appliedCount;
+    }
+
+    @Override
+    public void signedOut(SignOutRecord record) {
+        publish(seq -> ReplicationEvent.signOut(seq, record));
+    }
+
+    @Override
+    public void signedIn(SignOutRecord record) {
+        publish(seq -> ReplicationEvent.signIn(seq, record));
+    }
+
+    /** Queues what this kiosk knows of today so peers that missed it before a restart catch up */
+    private void seedOutbox(List<SignOutRecord> records) {
+        for (LongFunction<ReplicationEvent> event : stateOf(records)) {
+            publish(event);
+        }
+    }
+
+    /** What this kiosk knows of the records as events: its own sign-outs, then every sign-in */
+    private List<LongFunction<ReplicationEvent>> stateOf(List<SignOutRecord> records) {
+        List<LongFunction<ReplicationEvent>> events = new ArrayList<>();
+        for (SignOutRecord record : records) {
+            if (record.getOrigin().startsWith(nodeId + ":")) {
+                events.add(seq -> ReplicationEvent.signOut(seq, record));
+            }
+        }
+        // The sign-in may have happened here even for a peer's record; peers ignore ones they have
+        for (SignOutRecord record : records) {
+            if (record.getTimeSignedIn() != null && !record.getTimeSignedIn().isEmpty()) {
+                events.add(seq -> ReplicationEvent.signIn(seq, record));
+            }
+        }
+        return events;
+    }
+
+    private void publish(LongFunction<ReplicationEvent> event) {
+        synchronized (outbox) {
+            // With no one to send to there is nothing to keep
+            if (peers.isEmpty()) return;
+            outbox.add(event.apply(trimmed + outbox.size() + 1));
+            // A peer still behind what is dropped here gets a full resync instead
+            if (outbox.size() > outboxLimit) {
+                int dropped = outbox.size() - outboxLimit;
+                outbox.subList(0, dropped).clear();
+                trimmed += dropped;
+            }
+            outbox.notifyAll();
+        }
+    }
+
+    /**
+     * The day rolled over: yesterday's events are of no use to anyone, so start
+     * an empty outbox under a new epoch, seeded like a restart, and let every
+     * sender reconnect with it. Runs under the engine's lock.
+     */
+    private void startNewEpoch() {
+        synchronized (outbox) {
+            epoch = Math.max(System.currentTimeMillis(), epoch + 1);
+            outbox.clear();
+            trimmed = 0;
+            Arrays.fill(acked, 0);
+            outbox.notifyAll();
+        }
+        seedOutbox(engine.setLocalChangeObserver(this));
+    }
+
+    /**
+     * Waits up to the timeout for events after seq; returns an empty list if none
+     * arrived, or null if some of them have already been dropped from the outbox.
+     * Throws once the epoch the link was opened under is over.
+     */
+    private List<ReplicationEvent> awaitEvents(long linkEpoch, long after, long timeoutMs)
+            throws InterruptedException, IOException {
+        synchronized (outbox) {
+            if (trimmed + outbox.size() <= after && running && linkEpoch == epoch) {
+                outbox.wait(timeoutMs);
+            }
+            if (linkEpoch != epoch) throw new IOException("new epoch");
+            if (after < trimmed) return null;
+            int from = (int) Math.min(after - trimmed, outbox.size());
+            return new ArrayList<>(outbox.subList(from, outbox.size()));
+        }
+    }
+
+    /**
+     * Sends a peer that fell behind the outbox today's records in full, and returns
+     * the seq it carries on after. Every event up to that seq reached the engine
+     * before the records were read, so none of them is missed; later ones may be
+     * sent twice, which the peer ignores.
+     */
+    private long resync(BufferedWriter out, Signer signer, long linkEpoch) throws IOException {
+        long through;
+        synchronized (outbox) {
+            if (linkEpoch != epoch) throw new IOException("new epoch");
+            through = trimmed + outbox.size();
+        }
+        List<LongFunction<ReplicationEvent>> state = stateOf(engine.getRecordsSeenToday());
+        for (LongFunction<ReplicationEvent> event : state) {
+            out.write(signer.sign("STATE\t" + event.apply(through).toLine(), linkEpoch));
+        }
+        out.write(signer.sign("RESYNC\t" + through, linkEpoch));
+        out.flush();
+        System.out.println("Resent " + state.size() + " events of today's state to a peer behind the outbox");
+        return through;
+    }
+
+    /** Records how far the peer has got and drops what every peer now has */
+    private void acknowledge(int peer, long linkEpoch, long seq) {
+        synchronized (outbox) {
+            if (linkEpoch != epoch) return;
+            acked[peer] = seq;
+
+            long floor = Long.MAX_VALUE;
+            for (long peerSeq : acked) {
+                floor = Math.min(floor, peerSeq);
+            }
+            if (floor > trimmed) {
+                outbox.subList(0, (int) Math.min(floor - trimmed, outbox.size())).clear();
+                trimmed = floor;
+            }
+        }
+    }
+
+    /** Sender thread: keeps one connection to the peer open, reconnecting with backoff */
+    private void sendTo(int peerIndex) {
+        InetSocketAddress address = peers.get(peerIndex);
+        long backoff = RECONNECT_MIN_MS;
+        while (running) {
+            String peerNode = null;
+            Socket socket = new Socket();
+            sockets.add(socket);
+            try {
+                InetSocketAddress peer = address.isUnresolved()
+                        ? new InetSocketAddress(address.getHostString(), address.getPort()) : address;
+                socket.connect(peer, CONNECT_TIMEOUT_MS);
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(READ_TIMEOUT_MS);
+                BufferedReader in = reader(socket);
+                BufferedWriter out = writer(socket);
+                Signer signer = new Signer(key);
+
+                long linkEpoch;
+                synchronized (outbox) {
+                    linkEpoch = epoch;
+                }
+                out.write(signer.sign("HELLO\t" + nodeId + "\t" + linkEpoch, linkEpoch));
+                out.flush();
+                String resume = signer.verify(in.readLine(), linkEpoch);
+                if (resume == null) throw new IOException("peer failed authentication");
+                String[] reply = resume.split("\t");
+                if (reply.length != 3 || !reply[0].equals("RESUME")) {
+                    throw new IOException("unexpected reply from peer: " + String.join(" ", reply));
+                }
+                long sent = Long.parseLong(reply[1]);
+                peerNode = reply[2];
+                acknowledge(peerIndex, linkEpoch, sent);
+                outbound.put(peerNode, socket);
+                backoff = RECONNECT_MIN_MS;
+                System.out.println("Replicating to " + peerNode + " at " + address + " from event " + (sent + 1));
+
+                while (running) {
+                    List<ReplicationEvent> batch = awaitEvents(linkEpoch, sent, PING_INTERVAL_MS);
+                    if (batch == null) {
+                        sent = resync(out, signer, linkEpoch);
+                        continue;
+                    }
+                    if (batch.isEmpty()) {
+                        out.write(signer.sign("PING", linkEpoch));
+                    }
+                    for (ReplicationEvent event : batch) {
+                        out.write(signer.sign("EVENT\t" + event.toLine(), linkEpoch));
+                        sent = event.getSeq();
+                    }
+                    out.flush();
+
+                    while (in.ready()) {
+                        String line = signer.verify(in.readLine(), linkEpoch);
+                        if (line == null) throw new IOException("peer failed authentication");
+                        String[] ack = line.split("\t");
+                        if (ack.length == 2 && ack[0].equals("ACK")) {
+                            acknowledge(peerIndex, linkEpoch, Long.parseLong(ack[1]));
+                        }
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                if (running) System.out.println("Replication link to " + address + " down: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                if (peerNode != null) outbound.remove(peerNode, socket);
+                closeQuietly(socket);
+            }
+
+            try {
+                // New local events or a restarted peer cut the wait short
+                synchronized (outbox) {
+                    if (running) outbox.wait(backoff);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            backoff = Math.min(backoff * 2, RECONNECT_MAX_MS);
+        }
+    }
+
+    private void acceptPeers() {
+        while (running) {
+            try {
+                Socket socket = server.accept();
+                sockets.add(socket);
+                startThread("replication-from-" + socket.getRemoteSocketAddress(), () -> receiveFrom(socket));
+            } catch (IOException e) {
+                if (running) e.printStackTrace();
+            }
+        }
+    }
+
+    /** Receiver thread: applies one peer's events until the connection drops */
+    private void receiveFrom(Socket socket) {
+        try {
+            socket.setSoTimeout(READ_TIMEOUT_MS);
+            BufferedReader in = reader(socket);
+            BufferedWriter out = writer(socket);
+            Signer signer = new Signer(key);
+
+            String helloLine = String.valueOf(in.readLine());
+            String[] hello = helloLine.split("\t");
+            if (hello.length != 4 || !hello[0].equals("HELLO")) return;
+            long peerEpoch = Long.parseLong(hello[2]);
+            if (signer.verify(helloLine, peerEpoch) == null) {
+                System.err.println("Rejected replication peer " + socket.getRemoteSocketAddress() + ": bad HELLO signature");
+                return;
+            }
+            String peerNode = hello[1];
+            if (peerNode.equals(nodeId)) {
+                System.err.println("Replication peer " + socket.getRemoteSocketAddress() + " uses this node's ID " + nodeId);
+                return;
+            }
+            long resumeAt = resumePoint(peerNode, peerEpoch);
+            if (resumeAt < 0) {
+                System.err.println("Rejected replication peer " + socket.getRemoteSocketAddress() + ": HELLO from " + peerNode
+                        + " is older than its current epoch");
+                return;
+            }
+
+            out.write(signer.sign("RESUME\t" + resumeAt + "\t" + nodeId, peerEpoch));
+            out.flush();
+
+            String signed;
+            long received = 0;
+            while (running && (signed = in.readLine()) != null) {
+                String line = signer.verify(signed, peerEpoch);
+                if (line == null) {
+                    System.err.println("Dropped replication link from " + peerNode + ": bad signature");
+                    return;
+                }
+                if (line.startsWith("EVENT\t")) {
+                    ReplicationEvent event = ReplicationEvent.fromLine(line.substring(6));
+                    if (event != null) {
+                        apply(peerNode, peerEpoch, event);
+                        received = event.getSeq();
+                    }
+                } else if (line.startsWith("STATE\t")) {
+                    ReplicationEvent event = ReplicationEvent.fromLine(line.substring(6));
+                    if (event != null) applyState(event);
+                    continue;
+                } else if (line.startsWith("RESYNC\t")) {
+                    received = Long.parseLong(line.substring(7));
+                    skipTo(peerNode, peerEpoch, received);
+                } else {
+                    continue;
+                }
+                // One acknowledgement per burst, once the sender has nothing more queued
+                if (!in.ready()) {
+                    out.write(signer.sign("ACK\t" + received, peerEpoch));
+                    out.flush();
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            if (running) System.out.println("Replication link from " + socket.getRemoteSocketAddress() + " down: " + e.getMessage());
+        } finally {
+            closeQuietly(socket);
+        }
+    }
+
+    /** Where the peer's run resumes, or -1 if the epoch is older than the peer's current one */
+    private long resumePoint(String peerNode, long peerEpoch) {
+        synchronized (applyLock) {
+            Cursor cursor = cursors.get(peerNode);
+            if (cursor != null && peerEpoch < cursor.epoch) return -1;
+            if (cursor == null || cursor.epoch != peerEpoch) {
+                cursor = new Cursor(peerEpoch);
+                cursors.put(peerNode, cursor);
+                reconnectTo(peerNode);
+            }
+            return cursor.seq;
+        }
+    }
+
+    /** The peer restarted: drop our link to it, which it has lost, and wake the sender to reconnect */
+    private void reconnectTo(String peerNode) {
+        Socket stale = outbound.remove(peerNode);
+        if (stale != null) closeQuietly(stale);
+        synchronized (outbox) {
+            outbox.notifyAll();
+        }
+    }
+
+    private void apply(String peerNode, long peerEpoch, ReplicationEvent event) {
+        synchronized (applyLock) {
+            Cursor cursor = cursors.get(peerNode);
+            if (cursor != null && cursor.epoch == peerEpoch) {
+                if (event.getSeq() <= cursor.seq) return;
+                cursor.seq = event.getSeq();
+            }
+            applyEvent(event);
+        }
+    }
+
+    /** Applies part of a resync; it carries no position of its own, and anything already known is ignored */
+    private void applyState(ReplicationEvent event) {
+        synchronized (applyLock) {
+            applyEvent(event);
+        }
+    }
+
+    /** A resync ended: the peer's events up to seq are covered by the state just applied */
+    private void skipTo(String peerNode, long peerEpoch, long seq) {
+        synchronized (applyLock) {
+            Cursor cursor = cursors.get(peerNode);
+            if (cursor != null && cursor.epoch == peerEpoch && cursor.seq < seq) {
+                cursor.seq = seq;
+            }
+        }
+    }
+
+    private void applyEvent(ReplicationEvent event) {
+        if (event.getType() == ReplicationEvent.Type.SIGN_OUT) {
+            if (engine.applyRemoteSignOut(event.toRecord(), event.getClockTime())) {
+                appliedCount++;
+                // A third kiosk's sign-in can overtake the sign-out it refers to
+                ReplicationEvent signIn = pendingSignIns.remove(event.getOrigin());
+                if (signIn != null) applySignIn(signIn);
+            }
+        } else {
+            applySignIn(event);
+        }
+    }
+
+    private void applySignIn(ReplicationEvent event) {
+        if (engine.applyRemoteSignIn(event.getOrigin(), event.getTime(), event.getClockTime())) {
+            appliedCount++;
+        } else if (!engine.isKnown(event.getOrigin())) {
+            pendingSignIns.put(event.getOrigin(), event);
+        }
+    }
+
+    private void startThread(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static BufferedReader reader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private static BufferedWriter writer(Socket socket) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    private void closeQuietly(Socket socket) {
+        sockets.remove(socket);
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+
+    /** Stops accepting and sending; the engine is left open */
+    @Override
+    public synchronized void close() {
+        if (!running) return;
+        running = false;
+
+        engine.setLocalChangeObserver(null);
+        engine.removeListener(rollover);
+        try {
+            server.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        for (Socket socket : sockets) {
+            closeQuietly(socket);
+        }
+        synchronized (outbox) {
+            outbox.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package Search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Frequency-ranked completions for a text field. Terms live in a trie keyed by
+ * their normalized form; every node keeps the k most frequent terms below it,
+ * so a suggestion is one walk down the typed prefix with no search of the
+ * subtree. Counts only grow, which keeps those top-k lists exact as terms are
+ * added one at a time.
+ */
+public class PrefixIndex {
+
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node[] NO_NODES = new Node[0];
+
+    private static final class Node {
+        char[] labels = NO_LABELS;
+        Node[] children = NO_NODES;
+        Node[] top = NO_NODES;
+        int topSize = 0;
+        int count = 0;
+        String term; // as last entered, for terms that end here
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(labels, c);
+            return i < 0 ? null : children[i];
+        }
+
+        Node addChild(char c) {
+            int i = Arrays.binarySearch(labels, c);
+            if (i >= 0) return children[i];
+
+            // Children stay sorted in two small arrays rather than a map per node
+            i = -i - 1;
+            char[] grownLabels = new char[labels.length + 1];
+            Node[] grownChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, grownLabels, 0, i);
+            System.arraycopy(children, 0, grownChildren, 0, i);
+            System.arraycopy(labels, i, grownLabels, i + 1, labels.length - i);
+            System.arraycopy(children, i, grownChildren, i + 1, children.length - i);
+            Node child = new Node();
+            grownLabels[i] = c;
+            grownChildren[i] = child;
+            labels = grownLabels;
+            children = grownChildren;
+            return child;
+        }
+
+        /** Moves the terminal into this node's top-k after its count went up */
+        void promote(Node terminal, int k) {
+            int i = 0;
+            while (i < topSize && top[i] != terminal) i++;
+            if (i == topSize) {
+                if (topSize < k) {
+                    if (topSize == top.length) top = Arrays.copyOf(top, Math.min(k, Math.max(2, topSize * 2)));
+                    topSize++;
+                } else if (top[k - 1].count >= terminal.count) {
+                    return;
+                }
+                i = topSize - 1;
+                top[i] = terminal;
+            }
+            while (i > 0 && top[i - 1].count < terminal.count) {
+                top[i] = top[i - 1];
+                top[--i] = terminal;
+            }
+        }
+    }
+
+    private final Node root = new Node();
+    private final int k;
+    private final Function<String, String> keyOf;
+    private int terms = 0;
+
+    /** Completes case-insensitively, ignoring surrounding whitespace */
+    public PrefixIndex(int k) {
+        this(k, text -> text.trim().toLowerCase(Locale.ROOT));
+    }
+
+    /** keyOf normalizes both entered terms and typed prefixes, e.g. keeping only the digits of a phone number */
+    public PrefixIndex(int k, Function<String, String> keyOf) {
+        this.k = Math.max(1, k);
+        this.keyOf = keyOf;
+    }
+
+    /** Counts one more use of the term */
+    public synchronized void add(String term) {
+        if (term == null) return;
+        String key = keyOf.apply(term);
+        if (key.isEmpty()) return;
+
+        Node[] path = new Node[key.length() + 1];
+        Node node = path[0] = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = path[i + 1] = node.addChild(key.charAt(i));
+        }
+        if (node.count++ == 0) terms++;
+        node.term = term.trim();
+        for (Node ancestor : path) {
+            ancestor.promote(node, k);
+        }
+    }
+
+    /** Up to limit (at most k) terms starting with the prefix, most used first */
+    public synchronized List<String> suggest(String prefix, int limit) {
+        List<String> suggestions = new ArrayList<>(Math.min(limit, k));
+        String key = keyOf.apply(prefix);
+        if (key.isEmpty()) return suggestions;
+
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+        }
+        if (node == null) return suggestions;
+        for (int i = 0; i < node.topSize && i < limit; i++) {
+            suggestions.add(node.top[i].term);
+        }
+        return suggestions;
+    }
+
+    /** Number of distinct terms */
+    public synchronized int size() {
+        return terms;
+    }
+}
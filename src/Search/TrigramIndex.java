@@ -0,0 +1,150 @@
+package Search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Incremental substring index. Queries of three or more characters are answered
+ * by intersecting trigram posting sets; one- and two-character queries use a
+ * word-prefix index. Documents are added and removed one at a time, so the index
+ * never has to be rebuilt while the roster changes.
+ */
+public class TrigramIndex<T> {
+
+    private static final long PREFIX_MARKER = 1L << 62;
+
+    /** Normalized (lower-cased, newline-joined) text of each document */
+    private final Map<T, String> texts = new HashMap<>();
+    private final Map<Long, Set<T>> postings = new HashMap<>();
+
+    /** Indexes a document under the given fields, replacing any previous entry */
+    public void add(T doc, String... fields) {
+        remove(doc);
+
+        String text = normalize(fields);
+        texts.put(doc, text);
+        for (long key : keysFor(text)) {
+            postings.computeIfAbsent(key, k -> new HashSet<>()).add(doc);
+        }
+    }
+
+    public void remove(T doc) {
+        String text = texts.remove(doc);
+        if (text == null) return;
+
+        for (long key : keysFor(text)) {
+            Set<T> docs = postings.get(key);
+            if (docs != null) {
+                docs.remove(doc);
+                if (docs.isEmpty()) postings.remove(key);
+            }
+        }
+    }
+
+    public void clear() {
+        texts.clear();
+        postings.clear();
+    }
+
+    public int size() {
+        return texts.size();
+    }
+
+    /** Returns every document whose text contains the query; an empty query matches nothing */
+    public Set<T> search(String query) {
+        String q = query == null ? "" : query.trim().toLowerCase(Locale.ROOT);
+        if (q.isEmpty()) return Collections.emptySet();
+
+        if (q.length() < 3) {
+            Set<T> docs = postings.get(prefixKey(q, 0, q.length()));
+            return docs == null ? Collections.emptySet() : new HashSet<>(docs);
+        }
+
+        // Intersect starting from the rarest trigram, then verify against the text
+        List<Set<T>> sets = new ArrayList<>(q.length() - 2);
+        for (int i = 0; i + 3 <= q.length(); i++) {
+            Set<T> docs = postings.get(trigramKey(q, i));
+            if (docs == null) return Collections.emptySet();
+            sets.add(docs);
+        }
+        sets.sort((a, b) -> Integer.compare(a.size(), b.size()));
+
+        Set<T> result = new HashSet<>();
+        for (T doc : sets.get(0)) {
+            if (texts.get(doc).contains(q)) {
+                result.add(doc);
+            }
+        }
+        return result;
+    }
+
+    /** True if the indexed document would be returned by search(query) */
+    public boolean matches(T doc, String query) {
+        String text = texts.get(doc);
+        String q = query == null ? "" : query.trim().toLowerCase(Locale.ROOT);
+        if (text == null || q.isEmpty()) return false;
+
+        if (q.length() < 3) {
+            for (int i = 0; i < text.length(); i++) {
+                if ((i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1))) && text.startsWith(q, i)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return text.contains(q);
+    }
+
+    private static String normalize(String... fields) {
+        StringBuilder sb = new StringBuilder();
+        for (String field : fields) {
+            if (field == null || field.isEmpty()) continue;
+            if (sb.length() > 0) sb.append('\n');
+            sb.append(field.toLowerCase(Locale.ROOT));
+
+            // Let phone numbers match regardless of how they were punctuated
+            String digits = field.replaceAll("[^0-9]", "");
+            if (digits.length() >= 3 && digits.length() != field.length()) {
+                sb.append('\n').append(digits);
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Trigram keys of every field, plus one- and two-character prefixes of every word */
+    private static Set<Long> keysFor(String text) {
+        Set<Long> keys = new HashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            if (text.charAt(i) != '\n' && text.charAt(i + 1) != '\n' && text.charAt(i + 2) != '\n') {
+                keys.add(trigramKey(text, i));
+            }
+        }
+        for (int i = 0; i < text.length(); i++) {
+            boolean wordStart = Character.isLetterOrDigit(text.charAt(i))
+                    && (i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1)));
+            if (!wordStart) continue;
+
+            keys.add(prefixKey(text, i, 1));
+            if (i + 1 < text.length() && text.charAt(i + 1) != '\n') {
+                keys.add(prefixKey(text, i, 2));
+            }
+        }
+        return keys;
+    }
+
+    private static long trigramKey(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    private static long prefixKey(String s, int i, int length) {
+        long key = PREFIX_MARKER | ((long) length << 40) | ((long) s.charAt(i) << 16);
+        if (length == 2) key |= s.charAt(i + 1);
+        return key;
+    }
+}
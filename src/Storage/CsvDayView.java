@@ -0,0 +1,221 @@
+package Storage;
+
+import UIElements.SignOutRecord;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The CCO_SIGNOUTS CSV view of a day, in the same five columns it has always
+ * had, with an in-memory index from record ID to row position. A row is written
+ * with its TimeIn cell padded with spaces to the width of a time, so a sign-in
+ * is one positional write into that cell however large the day has grown.
+ */
+public class CsvDayView implements Closeable {
+
+    public static final String HEADER = "PeopleSignedOut,Location,TimeOut,TimeIn,Phone";
+
+    /** TimeIn of a finished day's row whose record was still out at midnight and went on to the next day */
+    public static final String CARRIED_OVER = "Carried over";
+
+    /** TimeIn of a record still out: blanks as wide as the "HH:mm:ss" that will replace them */
+    private static final String OPEN_TIME_IN = "        ";
+
+    /** Where a record's TimeIn cell lives in the file */
+    private static final class RowLocation {
+        final long timeInOffset;
+        /** Width of the cell in bytes, padding included */
+        final int timeInLength;
+
+        RowLocation(long timeInOffset, int timeInLength) {
+            this.timeInOffset = timeInOffset;
+            this.timeInLength = timeInLength;
+        }
+    }
+
+    private final File file;
+    private final Map<Long, RowLocation> index = new HashMap<>();
+    private FileChannel channel;
+    private long size;
+
+    public CsvDayView(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /** Rewrites the whole view from the given records and rebuilds the row index */
+    public void rebuild(List<SignOutRecord> records) throws IOException {
+        rebuild(records, OPEN_TIME_IN);
+    }
+
+    /**
+     * Rewrites a finished day's view; records still out were carried over to the
+     * next day, so their TimeIn says so rather than leaving them out for good
+     */
+    public void rebuildFinished(List<SignOutRecord> records) throws IOException {
+        rebuild(records, CARRIED_OVER);
+    }
+
+    private void rebuild(List<SignOutRecord> records, String stillOutTimeIn) throws IOException {
+        closeChannel();
+        index.clear();
+
+        StringBuilder contents = new StringBuilder(HEADER.length() + records.size() * 64);
+        contents.append(HEADER).append('\n');
+        long offset = utf8Length(contents);
+
+        for (SignOutRecord record : records) {
+            String timeIn = record.getTimeSignedIn() == null || record.getTimeSignedIn().isEmpty()
+                    ? stillOutTimeIn : record.getTimeSignedIn();
+            Row row = formatRow(record, record.getTimeSignedOut(), timeIn);
+            track(record.getId(), offset, row);
+            contents.append(row.text);
+            offset += row.bytes.length;
+        }
+
+        // Readers of the CSV see the old view or the new one, never half of either
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.wrap(contents.toString().getBytes(StandardCharsets.UTF_8));
+            while (buf.hasRemaining()) {
+                out.write(buf);
+            }
+            out.force(true);
+        }
+        SignOutJournal.moveAtomically(tmp.toPath(), file.toPath());
+
+        openChannel();
+    }
+
+    /** Appends a freshly signed-out record's row */
+    public void append(SignOutRecord record, String timeOut) throws IOException {
+        ensureOpen();
+
+        Row row = formatRow(record, timeOut, OPEN_TIME_IN);
+        writeFully(ByteBuffer.wrap(row.bytes), size);
+        track(record.getId(), size, row);
+        size += row.bytes.length;
+    }
+
+    /**
+     * Writes the TimeIn cell of a record's row in place, padding it to the cell's
+     * width. Returns false if the row is not indexed, or the time would need
+     * quoting or does not fit the cell, in which case the view must be rebuilt.
+     */
+    public boolean patchTimeIn(long recordId, String timeIn) throws IOException {
+        RowLocation location = index.get(recordId);
+        if (location == null || timeIn == null || CsvWriter.needsQuoting(timeIn)) return false;
+
+        byte[] text = timeIn.getBytes(StandardCharsets.UTF_8);
+        if (text.length > location.timeInLength) return false;
+
+        ensureOpen();
+        byte[] cell = new byte[location.timeInLength];
+        System.arraycopy(text, 0, cell, 0, text.length);
+        Arrays.fill(cell, text.length, cell.length, (byte) ' ');
+        writeFully(ByteBuffer.wrap(cell), location.timeInOffset);
+        return true;
+    }
+
+    /** Formats a record as a row of the day CSV, without the trailing newline */
+    public static String toCSVRow(SignOutRecord record, String timeOut, String timeIn) {
+        StringBuilder sb = new StringBuilder(96);
+        appendRow(sb, record, timeOut, timeIn);
+        return sb.toString();
+    }
+
+    private static class Row {
+        String text;
+        byte[] bytes;
+        int timeInColumn;
+        int timeInLength;
+    }
+
+    private void track(long recordId, long offset, Row row) {
+        index.put(recordId, new RowLocation(offset + row.timeInColumn, row.timeInLength));
+    }
+
+    /**
+     * Appends the row and returns the char offset of its TimeIn cell. Fields are
+     * quoted as needed; TimeIn holds a time, a marker or blanks and never needs it. Names
+     * keep the '%' separator older files and readers expect.
+     */
+    private static int appendRow(StringBuilder sb, SignOutRecord record, String timeOut, String timeIn) {
+        CsvWriter.appendField(sb, record.getName().replace(", ", "%"));
+        sb.append(',');
+        CsvWriter.appendField(sb, record.getLocation());
+        sb.append(',');
+        CsvWriter.appendField(sb, timeOut);
+        sb.append(',');
+        int timeInColumn = sb.length();
+        CsvWriter.appendField(sb, timeIn);
+        sb.append(',');
+        CsvWriter.appendField(sb, record.getPhone());
+        return timeInColumn;
+    }
+
+    private static Row formatRow(SignOutRecord record, String timeOut, String timeIn) {
+        StringBuilder sb = new StringBuilder(96);
+        int timeInColumn = appendRow(sb, record, timeOut, timeIn);
+        sb.append('\n');
+
+        Row row = new Row();
+        row.text = sb.toString();
+        row.bytes = row.text.getBytes(StandardCharsets.UTF_8);
+        row.timeInColumn = utf8Length(sb.subSequence(0, timeInColumn));
+        row.timeInLength = utf8Length(timeIn == null ? "" : timeIn);
+        return row;
+    }
+
+    private static int utf8Length(CharSequence text) {
+        return text.toString().getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private void writeFully(ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            position += channel.write(buf, position);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            openChannel();
+        }
+    }
+
+    private void openChannel() throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        size = channel.size();
+        if (size == 0) {
+            byte[] header = (HEADER + "\n").getBytes(StandardCharsets.UTF_8);
+            writeFully(ByteBuffer.wrap(header), 0);
+            size = header.length;
+        }
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel != null && channel.isOpen()) {
+            channel.close();
+        }
+        channel = null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeChannel();
+    }
+}
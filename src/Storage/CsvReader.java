@@ -0,0 +1,281 @@
+package Storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streaming RFC 4180 reader over a memory-mapped file. Delimiters are found by
+ * scanning the mapped bytes directly (they are ASCII, so UTF-8 text is safe to
+ * scan), quoted fields may contain commas, doubled quotes and line breaks, and
+ * each row is handed to the callback as reusable field views, so reading a
+ * file allocates nothing per row unless the handler copies a field out.
+ * Blank lines are skipped; a leading UTF-8 byte order mark is ignored.
+ */
+public class CsvReader {
+
+    /** Called once per row; the fields are only valid until it returns */
+    public interface RowHandler {
+        void row(int rowIndex, Fields fields) throws IOException;
+    }
+
+    /** The fields of the current row, decoded into one shared char buffer */
+    public static final class Fields {
+        private char[] chars = new char[256];
+        private int length = 0;
+        private int[] ends = new int[16];
+        private int count = 0;
+        private final Field[] views = new Field[16];
+
+        private void clear() {
+            length = 0;
+            count = 0;
+        }
+
+        private void append(char c) {
+            if (length == chars.length) {
+                char[] grown = new char[chars.length * 2];
+                System.arraycopy(chars, 0, grown, 0, length);
+                chars = grown;
+            }
+            chars[length++] = c;
+        }
+
+        private void endField() {
+            if (count == ends.length) {
+                int[] grown = new int[ends.length * 2];
+                System.arraycopy(ends, 0, grown, 0, count);
+                ends = grown;
+            }
+            ends[count++] = length;
+        }
+
+        public int count() {
+            return count;
+        }
+
+        private int start(int field) {
+            return field == 0 ? 0 : ends[field - 1];
+        }
+
+        public int length(int field) {
+            return ends[field] - start(field);
+        }
+
+        /** A view of the field, reused for the next row; copy it if it must outlive the call */
+        public CharSequence get(int field) {
+            if (field >= views.length) return getString(field);
+            Field view = views[field];
+            if (view == null) {
+                view = views[field] = new Field(this, field);
+            }
+            return view;
+        }
+
+        public String getString(int field) {
+            return new String(chars, start(field), length(field));
+        }
+
+        /** The field with surrounding whitespace removed */
+        public String getTrimmed(int field) {
+            int start = start(field);
+            int end = ends[field];
+            while (start < end && chars[start] <= ' ') start++;
+            while (end > start && chars[end - 1] <= ' ') end--;
+            return new String(chars, start, end - start);
+        }
+
+        /** The field with every occurrence of one character replaced, e.g. the '%' name separator */
+        public String getString(int field, char from, String to) {
+            int start = start(field);
+            int end = ends[field];
+            StringBuilder sb = null;
+            for (int i = start; i < end; i++) {
+                if (chars[i] == from) {
+                    if (sb == null) {
+                        sb = new StringBuilder(end - start + 8);
+                        sb.append(chars, start, i - start);
+                    }
+                    sb.append(to);
+                } else if (sb != null) {
+                    sb.append(chars[i]);
+                }
+            }
+            return sb == null ? new String(chars, start, end - start) : sb.toString();
+        }
+
+        public boolean isBlank(int field) {
+            for (int i = start(field); i < ends[field]; i++) {
+                if (chars[i] > ' ') return false;
+            }
+            return true;
+        }
+
+        /** Parses the field as a decimal long, ignoring surrounding spaces; returns fallback if it is not one */
+        public long getLong(int field, long fallback) {
+            int start = start(field);
+            int end = ends[field];
+            while (start < end && chars[start] == ' ') start++;
+            while (end > start && chars[end - 1] == ' ') end--;
+            if (start == end) return fallback;
+
+            boolean negative = chars[start] == '-';
+            if (negative && ++start == end) return fallback;
+            long value = 0;
+            for (int i = start; i < end; i++) {
+                char c = chars[i];
+                if (c < '0' || c > '9' || value > (Long.MAX_VALUE - 9) / 10) return fallback;
+                value = value * 10 + (c - '0');
+            }
+            return negative ? -value : value;
+        }
+    }
+
+    /** A field of the current row as a CharSequence */
+    private static final class Field implements CharSequence {
+        private final Fields fields;
+        private final int index;
+
+        Field(Fields fields, int index) {
+            this.fields = fields;
+            this.index = index;
+        }
+
+        @Override
+        public int length() {
+            return fields.length(index);
+        }
+
+        @Override
+        public char charAt(int i) {
+            return fields.chars[fields.start(index) + i];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(fields.chars, fields.start(index) + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return fields.getString(index);
+        }
+    }
+
+    private final Fields fields = new Fields();
+    private byte[] pending = new byte[64]; // a non-ASCII run being decoded
+
+    /** Reads every row of the file; returns the number of rows handed to the handler */
+    public int read(File file, RowHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("CSV file too large to map: " + file.getName());
+            }
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), handler);
+        }
+    }
+
+    private int read(MappedByteBuffer buffer, RowHandler handler) throws IOException {
+        int limit = buffer.limit();
+        int pos = 0;
+        if (limit >= 3 && buffer.get(0) == (byte) 0xEF && buffer.get(1) == (byte) 0xBB && buffer.get(2) == (byte) 0xBF) {
+            pos = 3;
+        }
+
+        int rowIndex = 0;
+        while (pos < limit) {
+            fields.clear();
+            boolean endOfRow = false;
+
+            // A line with nothing on it is not a row
+            byte first = buffer.get(pos);
+            if (first == '\n' || first == '\r') {
+                pos = skipLineBreak(buffer, pos, limit);
+                continue;
+            }
+
+            while (!endOfRow) {
+                if (pos < limit && buffer.get(pos) == '"') {
+                    pos = readQuoted(buffer, pos + 1, limit);
+                } else {
+                    pos = readPlain(buffer, pos, limit);
+                }
+                fields.endField();
+
+                if (pos >= limit) {
+                    endOfRow = true;
+                } else if (buffer.get(pos) == ',') {
+                    pos++;
+                } else {
+                    pos = skipLineBreak(buffer, pos, limit);
+                    endOfRow = true;
+                }
+            }
+            handler.row(rowIndex++, fields);
+        }
+        return rowIndex;
+    }
+
+    /** Reads up to the next comma or line break; returns the position of that delimiter */
+    private int readPlain(MappedByteBuffer buffer, int pos, int limit) {
+        while (pos < limit) {
+            byte b = buffer.get(pos);
+            if (b == ',' || b == '\n' || b == '\r') return pos;
+            if (b >= 0) {
+                fields.append((char) b);
+                pos++;
+            } else {
+                pos = decodeNonAscii(buffer, pos, limit);
+            }
+        }
+        return pos;
+    }
+
+    /** Reads a quoted field starting after its opening quote; returns the position after the closing quote */
+    private int readQuoted(MappedByteBuffer buffer, int pos, int limit) {
+        while (pos < limit) {
+            byte b = buffer.get(pos);
+            if (b == '"') {
+                if (pos + 1 < limit && buffer.get(pos + 1) == '"') {
+                    fields.append('"');
+                    pos += 2;
+                    continue;
+                }
+                // Anything between the closing quote and the delimiter is kept as written
+                return readPlain(buffer, pos + 1, limit);
+            }
+            if (b >= 0) {
+                fields.append((char) b);
+                pos++;
+            } else {
+                pos = decodeNonAscii(buffer, pos, limit);
+            }
+        }
+        return pos;
+    }
+
+    /** Decodes a run of non-ASCII bytes as UTF-8; returns the position after it */
+    private int decodeNonAscii(MappedByteBuffer buffer, int pos, int limit) {
+        int end = pos;
+        while (end < limit && buffer.get(end) < 0) end++;
+
+        int length = end - pos;
+        if (pending.length < length) pending = new byte[Math.max(length, pending.length * 2)];
+        buffer.get(pos, pending, 0, length);
+        String decoded = new String(pending, 0, length, StandardCharsets.UTF_8);
+        for (int i = 0; i < decoded.length(); i++) {
+            fields.append(decoded.charAt(i));
+        }
+        return end;
+    }
+
+    private static int skipLineBreak(MappedByteBuffer buffer, int pos, int limit) {
+        if (buffer.get(pos) == '\r') pos++;
+        if (pos < limit && buffer.get(pos) == '\n') pos++;
+        return pos;
+    }
+}
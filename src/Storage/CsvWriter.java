@@ -0,0 +1,85 @@
+package Storage;
+
+/**
+ * Builds RFC 4180 rows to match CsvReader. A field is quoted only when it holds
+ * a comma, a quote or a line break, so rows of plain values are written
+ * exactly as before; quotes inside a quoted field are doubled.
+ */
+public class CsvWriter {
+
+    private final StringBuilder out;
+    private boolean rowStarted = false;
+
+    public CsvWriter(StringBuilder out) {
+        this.out = out;
+    }
+
+    public CsvWriter() {
+        this(new StringBuilder(128));
+    }
+
+    /** Appends the next field of the current row */
+    public CsvWriter field(CharSequence value) {
+        if (rowStarted) out.append(',');
+        rowStarted = true;
+        appendField(out, value);
+        return this;
+    }
+
+    public CsvWriter field(long value) {
+        if (rowStarted) out.append(',');
+        rowStarted = true;
+        out.append(value);
+        return this;
+    }
+
+    /** Ends the current row with a newline */
+    public CsvWriter endRow() {
+        out.append('\n');
+        rowStarted = false;
+        return this;
+    }
+
+    /** Number of chars written so far */
+    public int length() {
+        return out.length();
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+    /** Appends one field, quoted if it needs to be; null is written as an empty field */
+    public static void appendField(StringBuilder out, CharSequence value) {
+        if (value == null) return;
+        if (!needsQuoting(value)) {
+            out.append(value);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') out.append('"');
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    /** Returns the field as it would be written */
+    public static String quote(CharSequence value) {
+        if (value == null) return "";
+        if (!needsQuoting(value)) return value.toString();
+        StringBuilder sb = new StringBuilder(value.length() + 4);
+        appendField(sb, value);
+        return sb.toString();
+    }
+
+    public static boolean needsQuoting(CharSequence value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') return true;
+        }
+        return false;
+    }
+}
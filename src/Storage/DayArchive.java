@@ -0,0 +1,400 @@
+package Storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * A finished day in compact, memory-mapped columnar form. Names, locations and
+ * phones are dictionary encoded, so a name or location filter is tested once
+ * per distinct value and rows are matched by integer code; the footer's stats
+ * let whole days be skipped without touching their columns.
+ *
+ * Layout, big-endian:
+ *   header        magic, format version
+ *   dictionaries  names, locations, phones, odd times: count, then (length, UTF-8 bytes) per entry
+ *   columns       name, location, phone, timeOut, timeIn codes as int[rows], then ids as long[rows]
+ *   footer        date, rows, section offsets, source CSV length and mtime,
+ *                 timeOut and timeIn min/max, still-out rows, people, magic
+ * Times are seconds of day; EMPTY is a blank TimeIn, and anything not written
+ * as HH:mm:ss is kept verbatim in the odd-times dictionary as -2 - index.
+ */
+public class DayArchive {
+
+    private static final String PREFIX = "CCO_ARCHIVE_";
+    private static final String SUFFIX = ".dat";
+    private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.ofPattern("yyyy_MM_dd");
+
+    private static final int MAGIC = 0x43434F41; // "CCOA"
+    // 2: the people stat no longer counts the blank name after a trailing ", "
+    private static final int FORMAT_VERSION = 2;
+    private static final int FOOTER_SIZE = 4 + 4 + 8 * 4 + 4 * 6 + 4;
+    private static final int EMPTY = -1;
+
+    private static final int NAMES = 0, LOCATIONS = 1, PHONES = 2, OTHER_TIMES = 3;
+
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private final LocalDate date;
+    private final int rows;
+    private final long sourceLength;
+    private final long sourceModified;
+    private final int minTimeOut, maxTimeOut, minTimeIn, maxTimeIn;
+    private final int stillOutRows;
+    private final int people;
+    private final int columnsOffset;
+    private final int[] dictionaryOffsets = new int[4];
+    private final String[][] dictionaries = new String[4][]; // decoded on first use
+    private final String[][] lowerCase = new String[4][];
+
+    private DayArchive(File file, MappedByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+
+        int footer = buffer.limit() - FOOTER_SIZE;
+        if (footer < 8 || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION
+                || buffer.getInt(buffer.limit() - 4) != MAGIC) {
+            throw new IOException("Not a sign-out archive: " + file.getName());
+        }
+
+        date = LocalDate.ofEpochDay(buffer.getInt(footer));
+        rows = buffer.getInt(footer + 4);
+        int dictionaryOffset = (int) buffer.getLong(footer + 8);
+        columnsOffset = (int) buffer.getLong(footer + 16);
+        sourceLength = buffer.getLong(footer + 24);
+        sourceModified = buffer.getLong(footer + 32);
+        minTimeOut = buffer.getInt(footer + 40);
+        maxTimeOut = buffer.getInt(footer + 44);
+        minTimeIn = buffer.getInt(footer + 48);
+        maxTimeIn = buffer.getInt(footer + 52);
+        stillOutRows = buffer.getInt(footer + 56);
+        people = buffer.getInt(footer + 60);
+
+        // Find where each dictionary starts by hopping over entry lengths
+        int position = dictionaryOffset;
+        for (int d = 0; d < dictionaryOffsets.length; d++) {
+            dictionaryOffsets[d] = position;
+            int count = buffer.getInt(position);
+            position += 4;
+            for (int i = 0; i < count; i++) {
+                position += 4 + buffer.getInt(position);
+            }
+        }
+        if (position != columnsOffset) {
+            throw new IOException("Corrupt sign-out archive: " + file.getName());
+        }
+    }
+
+    /** Returns the archive file for the given day */
+    public static File fileFor(File directory, LocalDate date) {
+        return new File(directory, PREFIX + date.format(FILE_DATE) + SUFFIX);
+    }
+
+    /** The day an archive file name refers to, or null if it is not an archive name */
+    static LocalDate dateOf(String fileName) {
+        if (!fileName.startsWith(PREFIX) || !fileName.endsWith(SUFFIX)) return null;
+        try {
+            return LocalDate.parse(fileName.substring(PREFIX.length(), fileName.length() - SUFFIX.length()), FILE_DATE);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /** Memory-maps an archive for reading */
+    public static DayArchive open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return new DayArchive(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public File getFile() { return file; }
+    public LocalDate getDate() { return date; }
+    public int getRowCount() { return rows; }
+    public int getStillOutCount() { return stillOutRows; }
+    public int getPeopleCount() { return people; }
+
+    /** Earliest and latest sign-out, in seconds of day; -1 if there are none */
+    public int getMinTimeOut() { return minTimeOut; }
+    public int getMaxTimeOut() { return maxTimeOut; }
+    public int getMinTimeIn() { return minTimeIn; }
+    public int getMaxTimeIn() { return maxTimeIn; }
+
+    /** True if the archive was built from this CSV as it is now */
+    public boolean isCurrentFor(File csv) {
+        return csv.length() == sourceLength && csv.lastModified() == sourceModified;
+    }
+
+    /** False if the footer alone proves no row can match */
+    public boolean mayMatch(HistoryQuery query) {
+        return rows > 0 && query.includesDate(date) && !(query.isStillOutOnly() && stillOutRows == 0);
+    }
+
+    /** The rows matching the query, found by dictionary code without decoding other rows */
+    public List<HistoryRow> select(HistoryQuery query) {
+        List<HistoryRow> result = new ArrayList<>();
+        if (!mayMatch(query)) return result;
+
+        boolean[] names = query.filtersName() ? matching(NAMES, query::matchesLowerName) : null;
+        if (names != null && names.length == 0) return result;
+        boolean[] locations = query.filtersLocation() ? matching(LOCATIONS, query::matchesLowerLocation) : null;
+        if (locations != null && locations.length == 0) return result;
+
+        int nameColumn = columnsOffset;
+        int locationColumn = nameColumn + rows * 4;
+        int timeInColumn = columnsOffset + rows * 16;
+        boolean stillOutOnly = query.isStillOutOnly();
+        for (int row = 0; row < rows; row++) {
+            if (stillOutOnly && buffer.getInt(timeInColumn + row * 4) != EMPTY) continue;
+            if (names != null && !names[buffer.getInt(nameColumn + row * 4)]) continue;
+            if (locations != null && !locations[buffer.getInt(locationColumn + row * 4)]) continue;
+            result.add(row(row));
+        }
+        return result;
+    }
+
+    /** Every row of the day, in CSV order */
+    public List<HistoryRow> rows() {
+        return select(HistoryQuery.all());
+    }
+
+    private HistoryRow row(int row) {
+        int column = columnsOffset + row * 4;
+        int columnSize = rows * 4;
+        return new HistoryRow(date,
+                dictionary(NAMES)[buffer.getInt(column)],
+                dictionary(LOCATIONS)[buffer.getInt(column + columnSize)],
+                decodeTime(buffer.getInt(column + columnSize * 3)),
+                decodeTime(buffer.getInt(column + columnSize * 4)),
+                dictionary(PHONES)[buffer.getInt(column + columnSize * 2)],
+                buffer.getLong(columnsOffset + columnSize * 5 + row * 8));
+    }
+
+    /** Flags the dictionary codes whose lower-cased value passes the test; an empty array if none do */
+    private boolean[] matching(int dictionary, Predicate<String> test) {
+        String[] values = lowerCaseDictionary(dictionary);
+        boolean[] matches = new boolean[values.length];
+        boolean any = false;
+        for (int i = 0; i < values.length; i++) {
+            if (test.test(values[i])) {
+                matches[i] = true;
+                any = true;
+            }
+        }
+        return any ? matches : new boolean[0];
+    }
+
+    private synchronized String[] dictionary(int dictionary) {
+        String[] values = dictionaries[dictionary];
+        if (values != null) return values;
+
+        int position = dictionaryOffsets[dictionary];
+        values = new String[buffer.getInt(position)];
+        position += 4;
+        for (int i = 0; i < values.length; i++) {
+            int length = buffer.getInt(position);
+            byte[] bytes = new byte[length];
+            buffer.get(position + 4, bytes);
+            values[i] = new String(bytes, StandardCharsets.UTF_8);
+            position += 4 + length;
+        }
+        dictionaries[dictionary] = values;
+        return values;
+    }
+
+    private synchronized String[] lowerCaseDictionary(int dictionary) {
+        String[] values = lowerCase[dictionary];
+        if (values != null) return values;
+
+        String[] original = dictionary(dictionary);
+        values = new String[original.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = original[i].toLowerCase(Locale.ROOT);
+        }
+        lowerCase[dictionary] = values;
+        return values;
+    }
+
+    private String decodeTime(int code) {
+        if (code == EMPTY) return "";
+        if (code < EMPTY) return dictionary(OTHER_TIMES)[-2 - code];
+
+        char[] chars = {
+                (char) ('0' + code / 36000), (char) ('0' + code / 3600 % 10), ':',
+                (char) ('0' + code / 600 % 6), (char) ('0' + code / 60 % 10), ':',
+                (char) ('0' + code % 60 / 10), (char) ('0' + code % 10)
+        };
+        return new String(chars);
+    }
+
+    /** Builds the archive for a finished day from its CSV; returns the archive file */
+    public static File archive(File csv, File directory, LocalDate date) throws IOException {
+        long length = csv.length();
+        long modified = csv.lastModified();
+        File archive = fileFor(directory, date);
+        write(archive, date, HistoryEngine.parse(csv, date), length, modified);
+        return archive;
+    }
+
+    /** Archives every day before the given date whose archive is missing or older than its CSV */
+    public static int archiveMissing(File directory, LocalDate before) {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(HistoryEngine.PREFIX) && name.endsWith(HistoryEngine.SUFFIX));
+        if (files == null) return 0;
+
+        int archived = 0;
+        for (File csv : files) {
+            LocalDate date = HistoryEngine.dateOf(csv.getName());
+            if (date == null || !date.isBefore(before)) continue;
+
+            File archive = fileFor(directory, date);
+            try {
+                if (archive.exists() && readFooterSource(archive, csv)) continue;
+                archive(csv, directory, date);
+                archived++;
+            } catch (IOException e) {
+                System.err.println("Could not archive " + csv.getName() + ": " + e.getMessage());
+            }
+        }
+        return archived;
+    }
+
+    /** True if the archive is in the current format and its footer names this CSV's current length and mtime */
+    private static boolean readFooterSource(File archive, File csv) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(archive, "r")) {
+            if (in.length() < 8 + FOOTER_SIZE) return false;
+            in.seek(4);
+            if (in.readInt() != FORMAT_VERSION) return false;
+            in.seek(in.length() - FOOTER_SIZE + 24);
+            return in.readLong() == csv.length() && in.readLong() == csv.lastModified();
+        }
+    }
+
+    /** Writes the rows as an archive, atomically replacing any previous one */
+    public static void write(File file, LocalDate date, List<HistoryRow> rows, long sourceLength, long sourceModified)
+            throws IOException {
+        List<Map<String, Integer>> dictionaries = new ArrayList<>();
+        for (int d = 0; d < 4; d++) {
+            dictionaries.add(new LinkedHashMap<>());
+        }
+
+        int n = rows.size();
+        int[][] columns = new int[5][n];
+        long[] ids = new long[n];
+        int minOut = -1, maxOut = -1, minIn = -1, maxIn = -1, stillOut = 0, people = 0;
+        for (int i = 0; i < n; i++) {
+            HistoryRow row = rows.get(i);
+            columns[0][i] = code(dictionaries.get(NAMES), row.getNames());
+            columns[1][i] = code(dictionaries.get(LOCATIONS), row.getLocation());
+            columns[2][i] = code(dictionaries.get(PHONES), row.getPhone());
+            columns[3][i] = encodeTime(row.getTimeOut(), dictionaries.get(OTHER_TIMES));
+            columns[4][i] = encodeTime(row.getTimeIn(), dictionaries.get(OTHER_TIMES));
+            ids[i] = row.getId();
+
+            int out = columns[3][i];
+            if (out >= 0) {
+                minOut = minOut < 0 ? out : Math.min(minOut, out);
+                maxOut = Math.max(maxOut, out);
+            }
+            int in = columns[4][i];
+            if (in >= 0) {
+                minIn = minIn < 0 ? in : Math.min(minIn, in);
+                maxIn = Math.max(maxIn, in);
+            }
+            if (row.isStillOut()) stillOut++;
+            people += row.getHeadCount();
+        }
+
+        List<byte[]> encoded = new ArrayList<>();
+        int dictionaryBytes = 0;
+        for (Map<String, Integer> dictionary : dictionaries) {
+            dictionaryBytes += 4;
+            for (String value : dictionary.keySet()) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                encoded.add(bytes);
+                dictionaryBytes += 4 + bytes.length;
+            }
+        }
+
+        int dictionaryOffset = 8;
+        int columnsOffset = dictionaryOffset + dictionaryBytes;
+        ByteBuffer buf = ByteBuffer.allocate(columnsOffset + n * (5 * 4 + 8) + FOOTER_SIZE);
+        buf.putInt(MAGIC).putInt(FORMAT_VERSION);
+
+        int next = 0;
+        for (Map<String, Integer> dictionary : dictionaries) {
+            buf.putInt(dictionary.size());
+            for (int i = 0; i < dictionary.size(); i++) {
+                byte[] bytes = encoded.get(next++);
+                buf.putInt(bytes.length).put(bytes);
+            }
+        }
+        for (int[] column : columns) {
+            for (int value : column) {
+                buf.putInt(value);
+            }
+        }
+        for (long id : ids) {
+            buf.putLong(id);
+        }
+
+        buf.putInt((int) date.toEpochDay()).putInt(n)
+                .putLong(dictionaryOffset).putLong(columnsOffset)
+                .putLong(sourceLength).putLong(sourceModified)
+                .putInt(minOut).putInt(maxOut).putInt(minIn).putInt(maxIn)
+                .putInt(stillOut).putInt(people)
+                .putInt(MAGIC);
+        buf.flip();
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            channel.force(true);
+        }
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static int code(Map<String, Integer> dictionary, String value) {
+        return dictionary.computeIfAbsent(value == null ? "" : value, k -> dictionary.size());
+    }
+
+    private static int encodeTime(String time, Map<String, Integer> otherTimes) {
+        if (time == null || time.isEmpty()) return EMPTY;
+        if (time.length() == 8 && time.charAt(2) == ':' && time.charAt(5) == ':') {
+            int h = digits(time, 0), m = digits(time, 3), s = digits(time, 6);
+            if (h >= 0 && h < 24 && m >= 0 && m < 60 && s >= 0 && s < 60) {
+                return h * 3600 + m * 60 + s;
+            }
+        }
+        return -2 - code(otherTimes, time);
+    }
+
+    private static int digits(String text, int at) {
+        char a = text.charAt(at), b = text.charAt(at + 1);
+        if (a < '0' || a > '9' || b < '0' || b > '9') return -1;
+        return (a - '0') * 10 + (b - '0');
+    }
+}
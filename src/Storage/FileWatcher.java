@@ -0,0 +1,85 @@
+package Storage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a callback on its own daemon thread when a file changes. A WatchService
+ * can only watch directories, so this watches the file's directory and ignores
+ * other names. It waits for the events to go quiet before calling back, so an
+ * editor that saves by rewriting in place, or by writing a temp file and
+ * renaming it, causes one callback once the file is complete.
+ */
+public class FileWatcher implements Closeable {
+
+    private final Path file;
+    private final long quietMillis;
+    private final Runnable onChange;
+    private final WatchService service;
+
+    public FileWatcher(File file, long quietMillis, Runnable onChange) throws IOException {
+        this.file = file.getAbsoluteFile().toPath();
+        this.quietMillis = quietMillis;
+        this.onChange = onChange;
+
+        service = FileSystems.getDefault().newWatchService();
+        this.file.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+
+        Thread thread = new Thread(this::run, "watch-" + file.getName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                if (!concernsFile(service.take())) continue;
+
+                // Let the rest of the save land before reading it
+                WatchKey more;
+                while ((more = service.poll(quietMillis, TimeUnit.MILLISECONDS)) != null) {
+                    concernsFile(more);
+                }
+
+                try {
+                    onChange.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        }
+    }
+
+    /** Drains the key's events and re-arms it; returns true if any of them was for the watched file */
+    private boolean concernsFile(WatchKey key) {
+        boolean concerns = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context())) {
+                concerns = true;
+            }
+        }
+        key.reset();
+        return concerns;
+    }
+
+    @Override
+    public void close() {
+        try {
+            service.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package Storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Answers queries across every CCO_SIGNOUTS_*.csv day file in a directory.
+ * Files are parsed in parallel, one fork-join task per day, and parse results
+ * are cached until the file's size or modification time changes. Days with a
+ * current {@link DayArchive} are read from the mapped archive instead, and
+ * skipped outright when its stats rule the query out.
+ */
+public class HistoryEngine {
+
+    static final String PREFIX = "CCO_SIGNOUTS_";
+    static final String SUFFIX = ".csv";
+    private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.ofPattern("yyyy_MM_dd");
+
+    /** A parsed day, valid while the file keeps the same size and mtime */
+    private static final class CachedDay {
+        final long size;
+        final long modified;
+        final List<HistoryRow> rows;
+
+        CachedDay(long size, long modified, List<HistoryRow> rows) {
+            this.size = size;
+            this.modified = modified;
+            this.rows = rows;
+        }
+    }
+
+    /** A day found on disk: its CSV, its archive, or both */
+    private static final class DayFile {
+        File file;
+        File archive;
+        final LocalDate date;
+
+        DayFile(LocalDate date) {
+            this.date = date;
+        }
+    }
+
+    /** An opened archive, valid while the archive file keeps the same size and mtime */
+    private static final class CachedArchive {
+        final long size;
+        final long modified;
+        final DayArchive archive;
+
+        CachedArchive(long size, long modified, DayArchive archive) {
+            this.size = size;
+            this.modified = modified;
+            this.archive = archive;
+        }
+    }
+
+    private final File directory;
+    private final ForkJoinPool pool;
+    private final Map<String, CachedDay> cache = new ConcurrentHashMap<>();
+    private final Map<String, CachedArchive> archives = new ConcurrentHashMap<>();
+    // Parsed file name dates; LocalDate.MIN marks names that are not day files
+    private final Map<String, LocalDate> fileDates = new ConcurrentHashMap<>();
+
+    public HistoryEngine(File directory) {
+        this(directory, ForkJoinPool.commonPool());
+    }
+
+    public HistoryEngine(File directory, ForkJoinPool pool) {
+        this.directory = directory;
+        this.pool = pool;
+    }
+
+    /**
+     * Streams matching rows in day order, oldest first. Every day is forked up
+     * front, and rows from earlier days flow as soon as their task finishes.
+     */
+    public Stream<HistoryRow> stream(HistoryQuery query) {
+        List<ParseDayTask> tasks = new ArrayList<>();
+        for (DayFile day : findDayFiles(query)) {
+            ParseDayTask task = new ParseDayTask(day, query);
+            pool.execute(task);
+            tasks.add(task);
+        }
+        return tasks.stream().flatMap(task -> task.join().stream()).filter(query);
+    }
+
+    /** Feeds matching rows to the consumer in day order, oldest first */
+    public void query(HistoryQuery query, Consumer<HistoryRow> consumer) {
+        try (Stream<HistoryRow> rows = stream(query)) {
+            rows.forEach(consumer);
+        }
+    }
+
+    /** Returns the latest matching row, or null */
+    public HistoryRow latest(HistoryQuery query) {
+        HistoryRow[] latest = new HistoryRow[1];
+        query(query, row -> latest[0] = row);
+        return latest[0];
+    }
+
+    /** Counts the people across all matching parties */
+    public int countPeople(HistoryQuery query) {
+        try (Stream<HistoryRow> rows = stream(query)) {
+            return rows.mapToInt(HistoryRow::getHeadCount).sum();
+        }
+    }
+
+    /** Drops every cached parse result */
+    public void invalidate() {
+        cache.clear();
+        archives.clear();
+    }
+
+    /** Lists the days in date order, skipping days the query excludes */
+    private List<DayFile> findDayFiles(HistoryQuery query) {
+        File[] files = directory.listFiles();
+        Map<LocalDate, DayFile> days = new TreeMap<>();
+        if (files == null) return new ArrayList<>();
+
+        for (File file : files) {
+            String name = file.getName();
+            boolean csv = name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            LocalDate date = fileDates.computeIfAbsent(name, key -> {
+                LocalDate parsed = csv ? dateOf(key) : DayArchive.dateOf(key);
+                if (parsed == null && csv) System.err.println("Skipping history file with unexpected name: " + key);
+                return parsed == null ? LocalDate.MIN : parsed;
+            });
+            if (date == LocalDate.MIN) continue;
+            if (!query.includesDate(date)) continue;
+
+            DayFile day = days.computeIfAbsent(date, DayFile::new);
+            if (csv) {
+                day.file = file;
+            } else {
+                day.archive = file;
+            }
+        }
+        return new ArrayList<>(days.values());
+    }
+
+    /** The day a CSV file name refers to, or null if it does not parse */
+    static LocalDate dateOf(String fileName) {
+        try {
+            return LocalDate.parse(fileName.substring(PREFIX.length(), fileName.length() - SUFFIX.length()), FILE_DATE);
+        } catch (DateTimeParseException | StringIndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    /** The day's archive if it exists and matches the CSV as it is now, otherwise null */
+    private DayArchive archiveFor(DayFile day) {
+        if (day.archive == null) return null;
+
+        String key = day.archive.getAbsolutePath();
+        long size = day.archive.length();
+        long modified = day.archive.lastModified();
+        CachedArchive cached = archives.get(key);
+        if (cached == null || cached.size != size || cached.modified != modified) {
+            try {
+                cached = new CachedArchive(size, modified, DayArchive.open(day.archive));
+                archives.put(key, cached);
+            } catch (IOException e) {
+                System.err.println("Ignoring unreadable archive " + day.archive.getName() + ": " + e.getMessage());
+                return null;
+            }
+        }
+
+        // The CSV was edited after archiving; it wins until the day is archived again
+        if (day.file != null && !cached.archive.isCurrentFor(day.file)) return null;
+        return cached.archive;
+    }
+
+    /** Returns the day's rows, re-parsing only if the file changed since the last query */
+    private List<HistoryRow> load(DayFile day) throws IOException {
+        String key = day.file.getAbsolutePath();
+        long size = day.file.length();
+        long modified = day.file.lastModified();
+
+        CachedDay cached = cache.get(key);
+        if (cached != null && cached.size == size && cached.modified == modified) {
+            return cached.rows;
+        }
+
+        List<HistoryRow> rows = Collections.unmodifiableList(parse(day.file, day.date));
+        cache.put(key, new CachedDay(size, modified, rows));
+        return rows;
+    }
+
+    /** Parses a day CSV in the five-column layout, also accepting the sixth Id column some interim builds wrote */
+    static List<HistoryRow> parse(File file, LocalDate date) throws IOException {
+        List<HistoryRow> rows = new ArrayList<>();
+
+        new CsvReader().read(file, (rowIndex, fields) -> {
+            if (rowIndex == 0 || fields.count() < 5) return; // Skip header
+            long id = fields.count() >= 6 ? fields.getLong(5, -1) : -1;
+            rows.add(new HistoryRow(date, fields.getString(0, '%', ", "), fields.getString(1),
+                    fields.getString(2), fields.getTrimmed(3), fields.getString(4), id));
+        });
+        return rows;
+    }
+
+    /** Selects from a day's archive, or parses (or fetches from cache) its CSV */
+    private class ParseDayTask extends RecursiveTask<List<HistoryRow>> {
+        private final DayFile day;
+        private final HistoryQuery query;
+
+        ParseDayTask(DayFile day, HistoryQuery query) {
+            this.day = day;
+            this.query = query;
+        }
+
+        @Override
+        protected List<HistoryRow> compute() {
+            DayArchive archive = archiveFor(day);
+            if (archive != null) {
+                return archive.select(query);
+            }
+            if (day.file == null) {
+                return Collections.emptyList();
+            }
+            try {
+                return load(day);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read " + day.file.getName(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package Storage;
+
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+/** Filter for history lookups. Unset criteria match everything. */
+public class HistoryQuery implements Predicate<HistoryRow> {
+    private String name;
+    private String location;
+    private LocalDate from;
+    private LocalDate to;
+    private boolean stillOutOnly = false;
+
+    public static HistoryQuery all() {
+        return new HistoryQuery();
+    }
+
+    /** Matches parties containing this name, case-insensitively */
+    public HistoryQuery name(String name) {
+        this.name = normalize(name);
+        return this;
+    }
+
+    /** Matches locations containing this text, case-insensitively */
+    public HistoryQuery location(String location) {
+        this.location = normalize(location);
+        return this;
+    }
+
+    /** Restricts to days in [from, to]; either bound may be null */
+    public HistoryQuery between(LocalDate from, LocalDate to) {
+        this.from = from;
+        this.to = to;
+        return this;
+    }
+
+    /** Matches only rows that were never signed back in */
+    public HistoryQuery stillOut() {
+        this.stillOutOnly = true;
+        return this;
+    }
+
+    /** True if rows from this day can match, so whole files can be skipped */
+    public boolean includesDate(LocalDate date) {
+        return (from == null || !date.isBefore(from)) && (to == null || !date.isAfter(to));
+    }
+
+    @Override
+    public boolean test(HistoryRow row) {
+        if (!includesDate(row.getDate())) return false;
+        if (stillOutOnly && !row.isStillOut()) return false;
+        return matchesName(row.getNames()) && matchesLocation(row.getLocation());
+    }
+
+    // Column-level checks, so archived days can filter their dictionaries before touching rows
+
+    boolean isStillOutOnly() {
+        return stillOutOnly;
+    }
+
+    boolean filtersName() {
+        return name != null;
+    }
+
+    boolean filtersLocation() {
+        return location != null;
+    }
+
+    boolean matchesName(String names) {
+        return matchesLowerName(names.toLowerCase(Locale.ROOT));
+    }
+
+    boolean matchesLocation(String location) {
+        return matchesLowerLocation(location.toLowerCase(Locale.ROOT));
+    }
+
+    /** As matchesName, for text already lower-cased with Locale.ROOT */
+    boolean matchesLowerName(String names) {
+        return name == null || names.contains(name);
+    }
+
+    boolean matchesLowerLocation(String location) {
+        return this.location == null || location.contains(this.location);
+    }
+
+    private static String normalize(String value) {
+        if (value == null || value.trim().isEmpty()) return null;
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+}
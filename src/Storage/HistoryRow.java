@@ -0,0 +1,52 @@
+package Storage;
+
+import UIElements.SignOutRecord;
+
+import java.time.LocalDate;
+
+/** One row of a daily sign-out CSV, tagged with the day it came from */
+public class HistoryRow {
+    private final LocalDate date;
+    private final String names;
+    private final String location;
+    private final String timeOut;
+    private final String timeIn;
+    private final String phone;
+    private final long id;
+
+    public HistoryRow(LocalDate date, String names, String location, String timeOut, String timeIn, String phone, long id) {
+        this.date = date;
+        this.names = names;
+        this.location = location;
+        this.timeOut = timeOut;
+        this.timeIn = timeIn;
+        this.phone = phone;
+        this.id = id;
+    }
+
+    public LocalDate getDate() { return date; }
+    public String getNames() { return names; }
+    public String getLocation() { return location; }
+    public String getTimeOut() { return timeOut; }
+    public String getPhone() { return phone; }
+
+    /** Sign-in time, or an empty string if the party never signed in that day */
+    public String getTimeIn() { return timeIn; }
+
+    /** Record ID from the Id column a few interim builds wrote, otherwise -1 */
+    public long getId() { return id; }
+
+    public boolean isStillOut() {
+        return timeIn.isEmpty();
+    }
+
+    /** Number of people in the party, counted as SignOutRecord counts them */
+    public int getHeadCount() {
+        return SignOutRecord.headCount(names);
+    }
+
+    @Override
+    public String toString() {
+        return date + " " + timeOut + "-" + (timeIn.isEmpty() ? "OUT" : timeIn) + " " + names + " (" + location + ")";
+    }
+}
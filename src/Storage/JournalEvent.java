@@ -0,0 +1,119 @@
+package Storage;
+
+/** A single entry in the sign-out journal */
+public class JournalEvent {
+
+    public enum Type { SIGN_OUT, SIGN_IN }
+
+    private static final char SEPARATOR = '\t';
+    private static final char FAMILY_LEAVE_FLAG = 'F';
+    private static final char OVERNIGHT_LEAVE_FLAG = 'O';
+
+    private final long seq;
+    private final Type type;
+    private final long recordId;
+    private final String time;
+    private final String names;
+    private final String location;
+    private final String phone;
+    private final boolean familyLeave;
+    private final boolean overnightLeave;
+    private final String origin;
+    private final String party;
+
+    private JournalEvent(long seq, Type type, long recordId, String time, String names, String location, String phone,
+                         boolean familyLeave, boolean overnightLeave, String origin, String party) {
+        this.seq = seq;
+        this.type = type;
+        this.recordId = recordId;
+        this.time = time;
+        this.names = names;
+        this.location = location;
+        this.phone = phone;
+        this.familyLeave = familyLeave;
+        this.overnightLeave = overnightLeave;
+        this.origin = origin;
+        this.party = party;
+    }
+
+    public static JournalEvent signOut(long seq, long recordId, String timeOut, String names, String location, String phone) {
+        return signOut(seq, recordId, timeOut, names, location, phone, false, false, null);
+    }
+
+    public static JournalEvent signOut(long seq, long recordId, String timeOut, String names, String location, String phone,
+                                       boolean familyLeave, boolean overnightLeave, String origin) {
+        return signOut(seq, recordId, timeOut, names, location, phone, familyLeave, overnightLeave, origin, null);
+    }
+
+    public static JournalEvent signOut(long seq, long recordId, String timeOut, String names, String location, String phone,
+                                       boolean familyLeave, boolean overnightLeave, String origin, String party) {
+        return new JournalEvent(seq, Type.SIGN_OUT, recordId, timeOut, names, location, phone, familyLeave, overnightLeave,
+                origin, party);
+    }
+
+    public static JournalEvent signIn(long seq, long recordId, String timeIn) {
+        return new JournalEvent(seq, Type.SIGN_IN, recordId, timeIn, null, null, null, false, false, null, null);
+    }
+
+    public long getSeq() { return seq; }
+    public Type getType() { return type; }
+    public long getRecordId() { return recordId; }
+    public String getTime() { return time; }
+    public String getNames() { return names; }
+    public String getLocation() { return location; }
+    public String getPhone() { return phone; }
+    public boolean isFamilyLeave() { return familyLeave; }
+    public boolean isOvernightLeave() { return overnightLeave; }
+    public String getOrigin() { return origin; }
+    public String getParty() { return party; }
+
+    /** Serializes the event as one journal line (without the trailing newline) */
+    public String toLine() {
+        StringBuilder sb = new StringBuilder(64);
+        sb.append(seq).append(SEPARATOR)
+                .append(type.name()).append(SEPARATOR)
+                .append(recordId).append(SEPARATOR)
+                .append(clean(time));
+        if (type == Type.SIGN_OUT) {
+            sb.append(SEPARATOR).append(clean(names))
+                    .append(SEPARATOR).append(clean(location))
+                    .append(SEPARATOR).append(clean(phone))
+                    .append(SEPARATOR);
+            if (familyLeave) sb.append(FAMILY_LEAVE_FLAG);
+            if (overnightLeave) sb.append(OVERNIGHT_LEAVE_FLAG);
+            if (origin != null || party != null) sb.append(SEPARATOR).append(clean(origin));
+            if (party != null) sb.append(SEPARATOR).append(clean(party));
+        }
+        return sb.toString();
+    }
+
+    /** Parses a journal line, returning null if the line is torn or malformed */
+    public static JournalEvent fromLine(String line) {
+        String[] parts = line.split("\t", -1);
+        if (parts.length < 4) return null;
+
+        try {
+            long seq = Long.parseLong(parts[0]);
+            Type type = Type.valueOf(parts[1]);
+            long recordId = Long.parseLong(parts[2]);
+
+            if (type == Type.SIGN_OUT) {
+                if (parts.length < 7) return null;
+                // Leave flags, origin and party were added later; older journals omit them
+                String flags = parts.length > 7 ? parts[7] : "";
+                String origin = parts.length > 8 && !parts[8].isEmpty() ? parts[8] : null;
+                String party = parts.length > 9 && !parts[9].isEmpty() ? parts[9] : null;
+                return signOut(seq, recordId, parts[3], parts[4], parts[5], parts[6],
+                        flags.indexOf(FAMILY_LEAVE_FLAG) >= 0, flags.indexOf(OVERNIGHT_LEAVE_FLAG) >= 0, origin, party);
+            }
+            return signIn(seq, recordId, parts[3]);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String clean(String value) {
+        if (value == null) return "";
+        return value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+}
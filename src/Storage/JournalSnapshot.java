@@ -0,0 +1,121 @@
+package Storage;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The sign-outs still open in a day's journal up to some byte offset. Its size
+ * depends only on how many people are out, so opening a journal from a snapshot
+ * costs the same however long the day has been; only the events after the
+ * offset are replayed.
+ *
+ * Format: a tab-separated header line, then one journal line per open sign-out.
+ *   SNAPSHOT  1  2024-03-08  journalOffset  nextSeq  openCount
+ */
+public class JournalSnapshot {
+
+    public static final String FILE_NAME = "CCO_SNAPSHOT.dat";
+
+    private static final String MAGIC = "SNAPSHOT";
+    private static final String FORMAT_VERSION = "1";
+
+    private final LocalDate date;
+    private final long journalOffset;
+    private final long nextSeq;
+    private final List<JournalEvent> open;
+
+    JournalSnapshot(LocalDate date, long journalOffset, long nextSeq, List<JournalEvent> open) {
+        this.date = date;
+        this.journalOffset = journalOffset;
+        this.nextSeq = nextSeq;
+        this.open = open;
+    }
+
+    public LocalDate getDate() { return date; }
+    public long getJournalOffset() { return journalOffset; }
+    public long getNextSeq() { return nextSeq; }
+    public List<JournalEvent> getOpen() { return Collections.unmodifiableList(open); }
+
+    /** True if the journal file is the snapshot's day and still holds everything the snapshot covers */
+    boolean covers(File journal) throws IOException {
+        if (!journal.getName().equals(SignOutJournal.fileFor(date).getName())) return false;
+        if (journalOffset == 0) return true;
+        if (journal.length() < journalOffset) return false;
+
+        // The covered prefix ends on a line break unless the file was replaced since
+        try (FileChannel reader = FileChannel.open(journal.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            reader.read(last, journalOffset - 1);
+            return last.get(0) == '\n';
+        }
+    }
+
+    /** Reads the snapshot, or returns null if there is none or it cannot be trusted */
+    public static JournalSnapshot read(File file) {
+        if (!file.exists()) return null;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            String[] header = split(reader.readLine());
+            if (header.length != 6 || !MAGIC.equals(header[0]) || !FORMAT_VERSION.equals(header[1])) {
+                System.err.println("Ignoring unrecognized snapshot " + file.getName());
+                return null;
+            }
+            LocalDate date = LocalDate.parse(header[2]);
+            long journalOffset = Long.parseLong(header[3]);
+            long nextSeq = Long.parseLong(header[4]);
+            int openCount = Integer.parseInt(header[5]);
+
+            List<JournalEvent> open = new ArrayList<>(openCount);
+            for (int i = 0; i < openCount; i++) {
+                String line = reader.readLine();
+                JournalEvent event = line == null ? null : JournalEvent.fromLine(line);
+                if (event == null || event.getType() != JournalEvent.Type.SIGN_OUT) {
+                    System.err.println("Ignoring truncated snapshot " + file.getName());
+                    return null;
+                }
+                open.add(event);
+            }
+            return new JournalSnapshot(date, journalOffset, nextSeq, open);
+        } catch (IOException | NumberFormatException | DateTimeParseException e) {
+            System.err.println("Could not read snapshot " + file.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Writes the snapshot beside the target, forces it to disk and moves it into place */
+    void write(File file) throws IOException {
+        StringBuilder contents = new StringBuilder(64 + open.size() * 96);
+        contents.append(MAGIC).append('\t').append(FORMAT_VERSION).append('\t').append(date)
+                .append('\t').append(journalOffset).append('\t').append(nextSeq)
+                .append('\t').append(open.size()).append('\n');
+        for (JournalEvent event : open) {
+            contents.append(event.toLine()).append('\n');
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.wrap(contents.toString().getBytes(StandardCharsets.UTF_8));
+            while (buf.hasRemaining()) {
+                out.write(buf);
+            }
+            out.force(true);
+        }
+        SignOutJournal.moveAtomically(tmp.toPath(), file.toPath());
+    }
+
+    private static String[] split(String line) {
+        return line == null ? new String[0] : line.split("\t", -1);
+    }
+}
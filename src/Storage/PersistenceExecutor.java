@@ -0,0 +1,230 @@
+package Storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-writer persistence thread. Roster mutations are queued in order and
+ * written off the UI thread; callers are told when each write is durable.
+ */
+public class PersistenceExecutor implements Closeable {
+
+    public enum Durability {
+        /** Completes as soon as the write reaches the OS */
+        FIRE_AND_FORGET,
+        /** Forces the file to disk after every write */
+        FSYNC_PER_WRITE,
+        /** Batches writes and forces them together every group-commit interval */
+        GROUP_COMMIT
+    }
+
+    /** A file that can be forced to stable storage */
+    public interface Syncable {
+        void sync() throws IOException;
+    }
+
+    /** A queued write; returns the file that must be made durable, or null if none */
+    public interface Task {
+        Syncable run() throws IOException;
+    }
+
+    /** Called on the callback executor once a task is durable, with the error if it failed */
+    public interface Completion {
+        void done(IOException error);
+    }
+
+    private static class Entry {
+        final Task task;
+        final Completion completion;
+        IOException error;
+
+        Entry(Task task, Completion completion) {
+            this.task = task;
+            this.completion = completion;
+        }
+    }
+
+    private static final Entry SHUTDOWN = new Entry(null, null);
+
+    private final Durability durability;
+    private final long groupCommitNanos;
+    private final Executor callbackExecutor;
+    private final BlockingQueue<Entry> queue;
+    private final Thread writer;
+
+    // Writer-thread state
+    private final List<Entry> pendingCommit = new ArrayList<>();
+    private final Set<Syncable> dirty = Collections.newSetFromMap(new IdentityHashMap<>());
+    private long commitDeadline;
+
+    private volatile boolean closed = false;
+
+    public PersistenceExecutor(Durability durability, long groupCommitMillis, int capacity, Executor callbackExecutor) {
+        this.durability = durability;
+        this.groupCommitNanos = TimeUnit.MILLISECONDS.toNanos(groupCommitMillis);
+        this.callbackExecutor = callbackExecutor;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+
+        writer = new Thread(this::runWriter, "persistence-writer");
+        writer.setDaemon(true);
+        writer.start();
+
+        System.out.println("Persistence writer started (" + durability +
+                (durability == Durability.GROUP_COMMIT ? ", " + groupCommitMillis + " ms" : "") + ")");
+    }
+
+    /**
+     * Builds an executor from the cco.durability ("fire-and-forget", "fsync" or "group")
+     * and cco.groupCommitMs system properties. Defaults to a 25 ms group commit.
+     */
+    public static PersistenceExecutor fromSystemProperties(Executor callbackExecutor) {
+        String mode = System.getProperty("cco.durability", "group").trim().toLowerCase();
+        long groupCommitMs = Long.getLong("cco.groupCommitMs", 25);
+
+        Durability durability;
+        switch (mode) {
+            case "fire-and-forget": durability = Durability.FIRE_AND_FORGET; break;
+            case "fsync": durability = Durability.FSYNC_PER_WRITE; break;
+            default: durability = Durability.GROUP_COMMIT; break;
+        }
+        return new PersistenceExecutor(durability, groupCommitMs, 1024, callbackExecutor);
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /** Runs the task on the callback executor, behind the completions already handed to it */
+    public void callback(Runnable task) {
+        callbackExecutor.execute(task);
+    }
+
+    /** Queues a write with no completion callback */
+    public void submit(Task task) {
+        submit(task, null);
+    }
+
+    /**
+     * Queues a write behind every previously submitted one. Blocks only if the
+     * queue is full, i.e. the disk has fallen a full queue's worth behind.
+     */
+    public void submit(Task task, Completion completion) {
+        if (closed) {
+            throw new IllegalStateException("Persistence executor is closed");
+        }
+        try {
+            queue.put(new Entry(task, completion));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runWriter() {
+        while (true) {
+            Entry entry;
+            try {
+                if (pendingCommit.isEmpty()) {
+                    entry = queue.take();
+                } else {
+                    long wait = commitDeadline - System.nanoTime();
+                    entry = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : null;
+                }
+            } catch (InterruptedException e) {
+                entry = SHUTDOWN;
+            }
+
+            if (entry == null) {
+                commit();
+                continue;
+            }
+            if (entry == SHUTDOWN) {
+                commit();
+                return;
+            }
+
+            Syncable target = null;
+            try {
+                target = entry.task.run();
+            } catch (IOException e) {
+                entry.error = e;
+            } catch (RuntimeException e) {
+                entry.error = new IOException(e);
+            }
+
+            if (durability == Durability.GROUP_COMMIT && (target != null || !pendingCommit.isEmpty())) {
+                // Keep completions in submission order behind the open batch
+                if (pendingCommit.isEmpty()) {
+                    commitDeadline = System.nanoTime() + groupCommitNanos;
+                }
+                if (target != null && entry.error == null) {
+                    dirty.add(target);
+                }
+                pendingCommit.add(entry);
+                continue;
+            }
+
+            if (durability == Durability.FSYNC_PER_WRITE && target != null && entry.error == null) {
+                entry.error = sync(target);
+            }
+            complete(entry);
+        }
+    }
+
+    /** Forces every file touched by the open batch, then releases its completions */
+    private void commit() {
+        IOException error = null;
+        for (Syncable target : dirty) {
+            IOException e = sync(target);
+            if (e != null) error = e;
+        }
+        dirty.clear();
+
+        for (Entry entry : pendingCommit) {
+            if (entry.error == null) entry.error = error;
+            complete(entry);
+        }
+        pendingCommit.clear();
+    }
+
+    private IOException sync(Syncable target) {
+        try {
+            target.sync();
+            return null;
+        } catch (IOException e) {
+            return e;
+        }
+    }
+
+    private void complete(Entry entry) {
+        if (entry.error != null) {
+            System.err.println("Persistence write failed: " + entry.error.getMessage());
+        }
+        if (entry.completion != null) {
+            IOException error = entry.error;
+            callbackExecutor.execute(() -> entry.completion.done(error));
+        }
+    }
+
+    /** Drains every queued write, commits it, and stops the writer thread */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            queue.put(SHUTDOWN);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("Persistence writer stopped");
+    }
+}
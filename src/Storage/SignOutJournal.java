@@ -0,0 +1,405 @@
+package Storage;
+
+import UIElements.SignOutRecord;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only event journal for a single day. Every sign-out and sign-in is one
+ * small append, and the day's CSV view is rebuilt from the journal on demand.
+ * The journal also keeps the day's open sign-outs as it goes, so they can be
+ * saved as a JournalSnapshot and restored without replaying the whole day.
+ */
+public class SignOutJournal implements Closeable, PersistenceExecutor.Syncable {
+
+    /** Appended to the location of a record carried over from the day before */
+    public static final String CARRIED_OVER = " (Carried over)";
+
+    private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.ofPattern("yyyy_MM_dd");
+    private static final String PREFIX = "CCO_JOURNAL_";
+    private static final String SUFFIX = ".log";
+
+    private final File file;
+    private FileChannel channel;
+    private long nextSeq = 1;
+    // Sign-outs not yet signed in, by record ID
+    private final Map<Long, JournalEvent> openEvents = new LinkedHashMap<>();
+    private int eventsSinceSnapshot = 0;
+
+    public SignOutJournal(File file) throws IOException {
+        this(file, null);
+    }
+
+    /**
+     * Opens the journal, restoring its state from the snapshot and replaying only
+     * the events after it. A snapshot of another day, or one the file no longer
+     * matches, is ignored and the whole journal is replayed.
+     */
+    public SignOutJournal(File file, JournalSnapshot snapshot) throws IOException {
+        this.file = file;
+
+        if (snapshot == null || !snapshot.covers(file) || !restore(snapshot)) {
+            openEvents.clear();
+            List<JournalEvent> events = readEvents(file, 0);
+            for (JournalEvent event : events) {
+                apply(event);
+            }
+            eventsSinceSnapshot = events.size();
+        }
+        channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        truncateTornLine();
+    }
+
+    /** Applies the snapshot and the journal tail after it; false if the tail does not follow on */
+    private boolean restore(JournalSnapshot snapshot) throws IOException {
+        List<JournalEvent> tail = readEvents(file, snapshot.getJournalOffset());
+        if (!tail.isEmpty() && tail.get(0).getSeq() != snapshot.getNextSeq()) return false;
+
+        for (JournalEvent event : snapshot.getOpen()) {
+            openEvents.put(event.getRecordId(), event);
+        }
+        nextSeq = snapshot.getNextSeq();
+        for (JournalEvent event : tail) {
+            apply(event);
+        }
+        eventsSinceSnapshot = tail.size();
+        return true;
+    }
+
+    private void apply(JournalEvent event) {
+        if (event.getType() == JournalEvent.Type.SIGN_OUT) {
+            openEvents.put(event.getRecordId(), event);
+        } else {
+            openEvents.remove(event.getRecordId());
+        }
+        nextSeq = Math.max(nextSeq, event.getSeq() + 1);
+    }
+
+    /** Returns the journal file for the given day */
+    public static File fileFor(LocalDate date) {
+        return new File(PREFIX + date.format(FILE_DATE) + SUFFIX);
+    }
+
+    /** The latest day on or before the given one with a journal in the directory, or null */
+    public static LocalDate latestDay(File directory, LocalDate onOrBefore) {
+        String[] names = directory.list((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (names == null) return null;
+
+        LocalDate latest = null;
+        for (String name : names) {
+            try {
+                LocalDate date = LocalDate.parse(name.substring(PREFIX.length(), name.length() - SUFFIX.length()), FILE_DATE);
+                if (!date.isAfter(onOrBefore) && (latest == null || date.isAfter(latest))) {
+                    latest = date;
+                }
+            } catch (DateTimeParseException e) {
+                // Not a day journal
+            }
+        }
+        return latest;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public boolean isEmpty() {
+        return nextSeq == 1;
+    }
+
+    /** Records a sign-out and assigns the record its journal ID */
+    public JournalEvent appendSignOut(SignOutRecord record, String timeOut) throws IOException {
+        return appendSignOut(record, timeOut, record.getLocation());
+    }
+
+    /** Records a sign-out under an explicit location, e.g. when carrying a record over to a new day */
+    public synchronized JournalEvent appendSignOut(SignOutRecord record, String timeOut, String location) throws IOException {
+        long seq = nextSeq++;
+        record.setId(seq);
+        JournalEvent event = JournalEvent.signOut(seq, seq, timeOut,
+                record.getName(), location, record.getPhone(), record.isFamilyLeave(), record.isOvernightLeave(),
+                record.getOrigin(), record.getParty());
+        write(event);
+        return event;
+    }
+
+    /** Records a sign-in against a previously journaled sign-out */
+    public synchronized JournalEvent appendSignIn(SignOutRecord record, String timeIn) throws IOException {
+        JournalEvent event = JournalEvent.signIn(nextSeq++, record.getId(), timeIn);
+        write(event);
+        return event;
+    }
+
+    /** Records several sign-ins with a single write, e.g. a formation signing back in together */
+    public synchronized List<JournalEvent> appendSignIns(List<SignOutRecord> records, String timeIn) throws IOException {
+        List<JournalEvent> events = new ArrayList<>(records.size());
+        StringBuilder lines = new StringBuilder(records.size() * 32);
+        for (SignOutRecord record : records) {
+            JournalEvent event = JournalEvent.signIn(nextSeq++, record.getId(), timeIn);
+            lines.append(event.toLine()).append('\n');
+            events.add(event);
+        }
+        writeLines(lines);
+        for (JournalEvent event : events) {
+            apply(event);
+            eventsSinceSnapshot++;
+        }
+        return events;
+    }
+
+    /**
+     * Writes a day's journal seeded with the records carried over from the day before.
+     * The file is built beside the target, forced to disk and then moved into place,
+     * so a crash leaves either every carried-over sign-out or none of them. Events
+     * already in the target are kept ahead of the new ones, and a record already
+     * signed out there, e.g. by an earlier attempt, is not carried in again.
+     * Returns each record's journal ID in the new day, in order; the records
+     * themselves are not changed.
+     */
+    public static List<Long> writeCarriedOver(File file, List<SignOutRecord> records, String timeOut) throws IOException {
+        List<JournalEvent> existing = readEvents(file, 0);
+        long seq = nextSeqOf(existing);
+        Map<String, Long> present = new HashMap<>();
+        for (JournalEvent event : existing) {
+            if (event.getType() == JournalEvent.Type.SIGN_OUT && event.getOrigin() != null) {
+                present.put(event.getOrigin(), event.getRecordId());
+            }
+        }
+
+        List<Long> ids = new ArrayList<>(records.size());
+        StringBuilder contents = new StringBuilder(records.size() * 96);
+        for (SignOutRecord record : records) {
+            Long id = record.getOrigin() == null ? null : present.get(record.getOrigin());
+            if (id != null) {
+                ids.add(id);
+                continue;
+            }
+            String location = record.getLocation().endsWith(CARRIED_OVER) ? record.getLocation() : record.getLocation() + CARRIED_OVER;
+            ids.add(seq);
+            JournalEvent event = JournalEvent.signOut(seq, seq, timeOut,
+                    record.getName(), location, record.getPhone(),
+                    record.isFamilyLeave(), record.isOvernightLeave(), record.getOrigin(), record.getParty());
+            contents.append(event.toLine()).append('\n');
+            seq++;
+        }
+        if (contents.length() == 0) return ids;
+
+        Path target = file.toPath();
+        Path tmp = new File(file.getPath() + ".tmp").toPath();
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (file.exists()) {
+                // A torn last line is left behind, so it cannot swallow the first carried-over event
+                try (FileChannel in = FileChannel.open(target, StandardOpenOption.READ)) {
+                    long intact = intactLength(in);
+                    for (long copied = 0; copied < intact; ) {
+                        copied += in.transferTo(copied, intact - copied, out);
+                    }
+                }
+            }
+            writeFully(out, contents.toString().getBytes(StandardCharsets.UTF_8));
+            out.force(true);
+        }
+        moveAtomically(tmp, target);
+        return ids;
+    }
+
+    /** Replaces target with source in one step where the file system allows it */
+    static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** Length of the file up to and including its last newline; anything after it is a line torn by a crash */
+    private static long intactLength(FileChannel reader) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(4096);
+        long end = reader.size();
+        while (end > 0) {
+            long start = Math.max(0, end - chunk.capacity());
+            chunk.clear().limit((int) (end - start));
+            while (chunk.hasRemaining()) {
+                if (reader.read(chunk, start + chunk.position()) < 0) break;
+            }
+            for (int i = chunk.position() - 1; i >= 0; i--) {
+                if (chunk.get(i) == '\n') return start + i + 1;
+            }
+            end = start;
+        }
+        return 0;
+    }
+
+    private static void writeFully(FileChannel channel, byte[] bytes) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+
+    private void write(JournalEvent event) throws IOException {
+        writeLines(event.toLine() + "\n");
+        apply(event);
+        eventsSinceSnapshot++;
+    }
+
+    private void writeLines(CharSequence lines) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+
+    /** The sign-outs not yet signed in, as fresh records in sign-out order */
+    public synchronized List<SignOutRecord> openRecords() {
+        List<SignOutRecord> records = new ArrayList<>(openEvents.size());
+        for (JournalEvent event : openEvents.values()) {
+            records.add(toRecord(event));
+        }
+        return records;
+    }
+
+    /** Events appended since the last snapshot, or since opening if none was written */
+    public synchronized int eventsSinceSnapshot() {
+        return eventsSinceSnapshot;
+    }
+
+    /** Forces the journal, then saves its current state as the snapshot for the given day */
+    public synchronized void writeSnapshot(File snapshotFile, LocalDate date) throws IOException {
+        channel.force(false);
+        new JournalSnapshot(date, channel.size(), nextSeq,
+                new ArrayList<>(openEvents.values())).write(snapshotFile);
+        eventsSinceSnapshot = 0;
+    }
+
+    private static long nextSeqOf(List<JournalEvent> events) {
+        return events.isEmpty() ? 1 : events.get(events.size() - 1).getSeq() + 1;
+    }
+
+    /** Reads every intact event in the journal, skipping a torn final line */
+    public List<JournalEvent> readEvents() throws IOException {
+        return readEvents(file, 0);
+    }
+
+    /** Reads the intact events from the given byte offset on, up to the last newline */
+    private static List<JournalEvent> readEvents(File file, long offset) throws IOException {
+        List<JournalEvent> events = new ArrayList<>();
+        if (!file.exists()) return events;
+
+        try (FileInputStream in = new FileInputStream(file)) {
+            long intact = intactLength(in.getChannel());
+            if (intact <= offset) return events;
+            in.getChannel().position(offset);
+            byte[] bytes = in.readNBytes(Math.toIntExact(intact - offset));
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                JournalEvent event = JournalEvent.fromLine(line);
+                if (event != null) {
+                    events.add(event);
+                } else {
+                    System.err.println("Skipping malformed journal line: " + line);
+                }
+            }
+        }
+        return events;
+    }
+
+    /** Replays the journal into records in sign-out order, with sign-in times applied */
+    public List<SignOutRecord> replay() throws IOException {
+        Map<Long, SignOutRecord> records = new LinkedHashMap<>();
+
+        for (JournalEvent event : readEvents()) {
+            if (event.getType() == JournalEvent.Type.SIGN_OUT) {
+                records.put(event.getRecordId(), toRecord(event));
+            } else {
+                SignOutRecord record = records.get(event.getRecordId());
+                if (record != null) {
+                    record.setTimeSignedIn(event.getTime());
+                }
+            }
+        }
+        return new ArrayList<>(records.values());
+    }
+
+    private static SignOutRecord toRecord(JournalEvent signOut) {
+        SignOutRecord record = new SignOutRecord(signOut.getNames(), signOut.getLocation(),
+                signOut.getPhone(), signOut.getTime(), null);
+        record.setId(signOut.getRecordId());
+        record.setFamilyLeave(signOut.isFamilyLeave());
+        record.setOvernightLeave(signOut.isOvernightLeave());
+        record.setOrigin(signOut.getOrigin());
+        record.setParty(signOut.getParty());
+        return record;
+    }
+
+    /** Seeds an empty journal from a CSV written before the journal existed */
+    public synchronized void importCSV(File csvFile) throws IOException {
+        if (!isEmpty() || !csvFile.exists()) return;
+
+        new CsvReader().read(csvFile, (rowIndex, fields) -> {
+            if (rowIndex == 0 || fields.count() < 5) return; // Skip header
+            String timeOut = fields.getString(2);
+            SignOutRecord record = new SignOutRecord(fields.getString(0, '%', ", "), fields.getString(1),
+                    fields.getString(4), timeOut, null);
+            appendSignOut(record, timeOut);
+            if (!fields.isBlank(3)) {
+                appendSignIn(record, fields.getTrimmed(3));
+            }
+        });
+        System.out.println("Imported " + csvFile.getName() + " into " + file.getName());
+    }
+
+    /**
+     * Cuts off a line torn by a crash, so the next append starts a line of its own.
+     * The torn line was never read back; terminating it instead could make a
+     * half-written event with truncated fields parse on the next start.
+     */
+    private void truncateTornLine() throws IOException {
+        long size = channel.size();
+        if (size == 0) return;
+
+        try (FileChannel reader = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long intact = intactLength(reader);
+            if (intact < size) {
+                System.err.println("Discarding torn journal line at the end of " + file.getName());
+                channel.truncate(intact);
+            }
+        }
+    }
+
+    /** Forces appended events to stable storage */
+    @Override
+    public synchronized void sync() throws IOException {
+        if (channel != null && channel.isOpen()) {
+            channel.force(false);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null && channel.isOpen()) {
+            channel.force(false);
+            channel.close();
+        }
+    }
+}
@@ -1,19 +1,21 @@
 package UIElements;
 
+import CardScan.ScanPipeline;
+import Directory.Person;
+import Directory.PersonnelDirectory;
+
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.RoundRectangle2D;
-import java.util.Arrays;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Consumer;
 
 public class CardScannerField extends JComponent implements FocusListener, KeyListener {
-    private StringBuilder buffer = new StringBuilder();
+    private final ScanPipeline scanPipeline;
     private boolean scanning = false;
     private int scanTimeoutMs = 100;
-    private long lastKeyTime = 0;
+    private long lastKeyNanos = 0;
     private String placeholderText = "Scan CAC";
     private boolean hasScannedData = false;
     private String displayText = "";
@@ -22,8 +24,13 @@ public class CardScannerField extends JComponent implements FocusListener, KeyLi
     private JTextField noCacTextField;
     private UserBubblePanel bubblePanel;
     private boolean manualEntryMode = false;
+    private Consumer<Person> profileListener;
 
     public CardScannerField(UserBubblePanel ubp) {
+        this(ubp, PersonnelDirectory.empty());
+    }
+
+    public CardScannerField(UserBubblePanel ubp, PersonnelDirectory directory) {
         setFocusable(true);
         setPreferredSize(new Dimension(0, UITheme.INPUT_HEIGHT));
         setOpaque(false);
@@ -36,6 +43,9 @@ public class CardScannerField extends JComponent implements FocusListener, KeyLi
 
         bubblePanel = ubp;
 
+        // Scans are decoded and looked up off the EDT; only the finished name and profile come back here
+        scanPipeline = new ScanPipeline(scanTimeoutMs, directory, this::onCardScanned);
+
         noCacTextField = createModernTextField("Enter Name");
         noCacTextField.setBorder(new EmptyBorder(0,0,0,0));
         noCacTextField.setVisible(false);
@@ -115,29 +125,23 @@ public class CardScannerField extends JComponent implements FocusListener, KeyLi
         repaint();
     }
 
-    protected void onCardScanned(String data) {
-        hasScannedData = true;
-        String r = formatDataFromCac(data);
-        if (r != null) {
-            bubblePanel.addUser(r);
-        }
-        repaint();
+    /** Called on the EDT with the decoded "Lastname F" of a completed scan */
+    protected void onCardScanned(String name) {
+        bubblePanel.addUser(name);
         clear();
     }
 
-    private String formatDataFromCac(String data) {
-        String[] splitdata = data.split("\\.");
-        if (splitdata.length < 3) return null;
-        System.out.println(Arrays.toString(splitdata));
-        String lastname = capitalize(splitdata[0]);
-        String firstname = capitalize(splitdata[1]);
-        String middlename = capitalize(splitdata[2]);
-
-        return lastname + " " + firstname.charAt(0);
+    /** Called on the EDT with the scan's name and directory entry, or null if the card is not listed */
+    protected void onCardScanned(String name, Person person) {
+        onCardScanned(name);
+        if (person != null && profileListener != null) {
+            profileListener.accept(person);
+        }
     }
 
-    private String capitalize(String inp) {
-        return inp.substring(0, 1).toUpperCase() + inp.toLowerCase().substring(1);
+    /** Told about every scanned card found in the personnel directory */
+    public void setProfileListener(Consumer<Person> listener) {
+        profileListener = listener;
     }
 
     public String getScannedData() {
@@ -147,7 +151,6 @@ public class CardScannerField extends JComponent implements FocusListener, KeyLi
     public void clear() {
         displayText = "";
         hasScannedData = false;
-        buffer.setLength(0);
         repaint();
     }
 
@@ -226,29 +229,18 @@ public class CardScannerField extends JComponent implements FocusListener, KeyLi
         }
 
         char c = e.getKeyChar();
-        long now = System.currentTimeMillis();
-
-        if (now - lastKeyTime > scanTimeoutMs) {
-            buffer.setLength(0);
-            scanning = true;
-            repaint();
-        }
-
-        lastKeyTime = now;
+        long now = System.nanoTime();
+        scanPipeline.keyTyped(c, now);
 
+        // Only the scanning indicator is tracked here; parsing happens on the decoder thread
         if (c == '\n' || c == '\t') {
             scanning = false;
-            String scannedData = buffer.toString();
-            buffer.setLength(0);
-
-            if (!scannedData.isEmpty()) {
-                onCardScanned(scannedData);
-            }
             repaint();
-        } else if (Character.isLetterOrDigit(c) || c == ';' || c == '%' ||
-                c == '=' || c == '?' || c == '^' || c == ' ' || c == '.') {
-            buffer.append(c);
+        } else if (!scanning || now - lastKeyNanos > scanTimeoutMs * 1_000_000L) {
+            scanning = true;
+            repaint();
         }
+        lastKeyNanos = now;
 
         e.consume();
     }
@@ -275,7 +267,7 @@ public class CardScannerField extends JComponent implements FocusListener, KeyLi
 
     @Override
     public void focusLost(FocusEvent e) {
-        buffer.setLength(0);
+        scanPipeline.reset();
         scanning = false;
         repaint();
     }
@@ -0,0 +1,199 @@
+package UIElements;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * Treap augmented with subtree sizes, so insert, remove, get(index) and
+ * indexOf are all O(log n). Values are tracked by identity; equal keys keep
+ * their arrival order.
+ */
+class OrderStatisticTree<T> {
+
+    private static final class Node<T> {
+        final T value;
+        final long arrival;
+        final int priority;
+        Node<T> left, right, parent;
+        int size = 1;
+
+        Node(T value, long arrival, int priority) {
+            this.value = value;
+            this.arrival = arrival;
+            this.priority = priority;
+        }
+    }
+
+    private final Comparator<? super T> order;
+    private final Map<T, Node<T>> nodes = new IdentityHashMap<>();
+    private final Random random = new Random();
+    private Node<T> root;
+    private long arrivals = 0;
+
+    OrderStatisticTree(Comparator<? super T> order) {
+        this.order = order;
+    }
+
+    int size() {
+        return root == null ? 0 : root.size;
+    }
+
+    boolean contains(T value) {
+        return nodes.containsKey(value);
+    }
+
+    /** Inserts the value and returns its index; a value already present is left where it is */
+    int insert(T value) {
+        Node<T> existing = nodes.get(value);
+        if (existing != null) return rank(existing);
+
+        Node<T> node = new Node<>(value, arrivals++, random.nextInt());
+        nodes.put(value, node);
+
+        if (root == null) {
+            root = node;
+            return 0;
+        }
+
+        Node<T> cur = root;
+        while (true) {
+            cur.size++;
+            if (compare(node, cur) < 0) {
+                if (cur.left == null) { cur.left = node; break; }
+                cur = cur.left;
+            } else {
+                if (cur.right == null) { cur.right = node; break; }
+                cur = cur.right;
+            }
+        }
+        node.parent = cur;
+
+        while (node.parent != null && node.priority > node.parent.priority) {
+            rotateUp(node);
+        }
+        return rank(node);
+    }
+
+    /** Removes the value and returns the index it had, or -1 if it was not present */
+    int remove(T value) {
+        Node<T> node = nodes.remove(value);
+        if (node == null) return -1;
+
+        int index = rank(node);
+
+        // Rotate the node down to a leaf, then unlink it
+        while (node.left != null || node.right != null) {
+            Node<T> child;
+            if (node.left == null) child = node.right;
+            else if (node.right == null) child = node.left;
+            else child = node.left.priority > node.right.priority ? node.left : node.right;
+            rotateUp(child);
+        }
+
+        Node<T> parent = node.parent;
+        if (parent == null) {
+            root = null;
+        } else {
+            if (parent.left == node) parent.left = null;
+            else parent.right = null;
+            for (Node<T> p = parent; p != null; p = p.parent) {
+                p.size--;
+            }
+        }
+        node.parent = null;
+        return index;
+    }
+
+    T get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+        }
+
+        Node<T> cur = root;
+        while (true) {
+            int leftSize = size(cur.left);
+            if (index < leftSize) {
+                cur = cur.left;
+            } else if (index == leftSize) {
+                return cur.value;
+            } else {
+                index -= leftSize + 1;
+                cur = cur.right;
+            }
+        }
+    }
+
+    int indexOf(T value) {
+        Node<T> node = nodes.get(value);
+        return node == null ? -1 : rank(node);
+    }
+
+    void clear() {
+        nodes.clear();
+        root = null;
+    }
+
+    /** Visits every value in order */
+    void forEach(Consumer<? super T> action) {
+        Deque<Node<T>> stack = new ArrayDeque<>();
+        Node<T> cur = root;
+        while (cur != null || !stack.isEmpty()) {
+            while (cur != null) {
+                stack.push(cur);
+                cur = cur.left;
+            }
+            cur = stack.pop();
+            action.accept(cur.value);
+            cur = cur.right;
+        }
+    }
+
+    private int compare(Node<T> a, Node<T> b) {
+        int c = order.compare(a.value, b.value);
+        return c != 0 ? c : Long.compare(a.arrival, b.arrival);
+    }
+
+    private int rank(Node<T> node) {
+        int rank = size(node.left);
+        for (Node<T> x = node; x.parent != null; x = x.parent) {
+            if (x == x.parent.right) {
+                rank += size(x.parent.left) + 1;
+            }
+        }
+        return rank;
+    }
+
+    /** Rotates x above its parent, keeping subtree sizes correct */
+    private void rotateUp(Node<T> x) {
+        Node<T> p = x.parent;
+        Node<T> g = p.parent;
+
+        if (x == p.left) {
+            p.left = x.right;
+            if (x.right != null) x.right.parent = p;
+            x.right = p;
+        } else {
+            p.right = x.left;
+            if (x.left != null) x.left.parent = p;
+            x.left = p;
+        }
+        p.parent = x;
+        x.parent = g;
+
+        if (g == null) root = x;
+        else if (g.left == p) g.left = x;
+        else g.right = x;
+
+        p.size = 1 + size(p.left) + size(p.right);
+        x.size = 1 + size(x.left) + size(x.right);
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+}
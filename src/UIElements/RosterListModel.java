@@ -0,0 +1,231 @@
+package UIElements;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Roster list model ordered by sign-out time. Inserts and removals are O(log n)
+ * and fire single-row interval events, and filtered/sorted projections track the
+ * roster incrementally instead of copying it.
+ */
+public class RosterListModel extends AbstractListModel<SignOutRecord> {
+
+    /**
+     * Orders records by time of day signed out, then by origin, then by the order
+     * the engine published them in, so the roster and every projection agree
+     * however records arrived. Both tie-breaks are set before a record is
+     * published and never change; the journal ID is assigned later, on the
+     * writer thread, so it is not used.
+     */
+    public static final Comparator<SignOutRecord> BY_SIGN_OUT_TIME =
+            Comparator.<SignOutRecord>comparingInt(record -> secondsOfDay(record.getTimeSignedOut()))
+                    .thenComparing(SignOutRecord::getOrigin, Comparator.nullsLast(Comparator.naturalOrder()))
+                    .thenComparingLong(SignOutRecord::getArrival);
+
+    /** Told about each run of adjacent rows removed together */
+    private interface RunRemoved {
+        void removed(int first, int last);
+    }
+
+    private final OrderStatisticTree<SignOutRecord> tree = new OrderStatisticTree<>(BY_SIGN_OUT_TIME);
+    private final List<Projection> projections = new ArrayList<>();
+
+    @Override
+    public int getSize() {
+        return tree.size();
+    }
+
+    @Override
+    public SignOutRecord getElementAt(int index) {
+        return tree.get(index);
+    }
+
+    public int indexOf(SignOutRecord record) {
+        return tree.indexOf(record);
+    }
+
+    public boolean contains(SignOutRecord record) {
+        return tree.contains(record);
+    }
+
+    public void add(SignOutRecord record) {
+        if (tree.contains(record)) return;
+
+        int index = tree.insert(record);
+        fireIntervalAdded(this, index, index);
+        for (Projection projection : projections) {
+            projection.sourceAdded(record);
+        }
+    }
+
+    public boolean remove(SignOutRecord record) {
+        int index = tree.remove(record);
+        if (index < 0) return false;
+
+        fireIntervalRemoved(this, index, index);
+        for (Projection projection : projections) {
+            projection.sourceRemoved(record);
+        }
+        return true;
+    }
+
+    /**
+     * Removes several records with one interval removal per run of adjacent rows,
+     * so a formation signed out together goes in a single event. Returns how many
+     * were removed.
+     */
+    public int removeAll(Collection<SignOutRecord> records) {
+        int[] rows = removeRows(tree, records);
+        if (rows.length == 0) return 0;
+
+        forEachRunDescending(rows, (first, last) -> fireIntervalRemoved(this, first, last));
+        for (Projection projection : projections) {
+            projection.sourceRemovedAll(records);
+        }
+        return rows.length;
+    }
+
+    /** Re-sorts records whose sign-out time changed, e.g. after a day rollover */
+    public void reorder(Collection<SignOutRecord> records) {
+        for (SignOutRecord record : records) {
+            if (tree.remove(record) >= 0) tree.insert(record);
+        }
+        if (getSize() > 0) {
+            fireContentsChanged(this, 0, getSize() - 1);
+        }
+        for (Projection projection : projections) {
+            projection.reorder(records);
+        }
+    }
+
+    /** Visits every record in roster order */
+    public void forEach(Consumer<? super SignOutRecord> action) {
+        tree.forEach(action);
+    }
+
+    /**
+     * Creates a live view of the records accepted by the filter, in the given order
+     * with roster order breaking its ties (roster order if null). Initial membership is taken from candidates when the
+     * caller already knows the matches, otherwise the roster is scanned once.
+     * Call dispose() when the view is no longer shown.
+     */
+    public Projection project(Collection<SignOutRecord> candidates, Predicate<SignOutRecord> filter,
+                              Comparator<SignOutRecord> order) {
+        Projection projection = new Projection(filter, order == null ? BY_SIGN_OUT_TIME : order.thenComparing(BY_SIGN_OUT_TIME));
+        if (candidates != null) {
+            for (SignOutRecord record : candidates) {
+                if (tree.contains(record)) projection.tree.insert(record);
+            }
+        } else {
+            tree.forEach(record -> {
+                if (filter.test(record)) projection.tree.insert(record);
+            });
+        }
+        projections.add(projection);
+        return projection;
+    }
+
+    /** A filtered, optionally re-sorted live view over the roster */
+    public class Projection extends AbstractListModel<SignOutRecord> {
+        private final Predicate<SignOutRecord> filter;
+        private final OrderStatisticTree<SignOutRecord> tree;
+
+        private Projection(Predicate<SignOutRecord> filter, Comparator<SignOutRecord> order) {
+            this.filter = filter;
+            this.tree = new OrderStatisticTree<>(order);
+        }
+
+        @Override
+        public int getSize() {
+            return tree.size();
+        }
+
+        @Override
+        public SignOutRecord getElementAt(int index) {
+            return tree.get(index);
+        }
+
+        /** Stops tracking the roster */
+        public void dispose() {
+            projections.remove(this);
+        }
+
+        private void sourceAdded(SignOutRecord record) {
+            if (!filter.test(record)) return;
+            int index = tree.insert(record);
+            fireIntervalAdded(this, index, index);
+        }
+
+        private void sourceRemoved(SignOutRecord record) {
+            int index = tree.remove(record);
+            if (index >= 0) fireIntervalRemoved(this, index, index);
+        }
+
+        private void sourceRemovedAll(Collection<SignOutRecord> records) {
+            int[] rows = removeRows(tree, records);
+            forEachRunDescending(rows, (first, last) -> fireIntervalRemoved(this, first, last));
+        }
+
+        private void reorder(Collection<SignOutRecord> records) {
+            for (SignOutRecord record : records) {
+                if (tree.remove(record) >= 0) tree.insert(record);
+            }
+            if (getSize() > 0) {
+                fireContentsChanged(this, 0, getSize() - 1);
+            }
+        }
+    }
+
+    /** Removes the records from the tree; returns the distinct rows they held, ascending */
+    private static int[] removeRows(OrderStatisticTree<SignOutRecord> tree, Collection<SignOutRecord> records) {
+        int[] rows = new int[records.size()];
+        int count = 0;
+        for (SignOutRecord record : records) {
+            int index = tree.indexOf(record);
+            if (index >= 0) rows[count++] = index;
+        }
+        for (SignOutRecord record : records) {
+            tree.remove(record);
+        }
+
+        Arrays.sort(rows, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || rows[distinct - 1] != rows[i]) rows[distinct++] = rows[i];
+        }
+        return Arrays.copyOf(rows, distinct);
+    }
+
+    /**
+     * Reports the rows, given in their old positions, as runs of adjacent rows from
+     * the bottom up, so each run's positions are still right when it is reported.
+     */
+    private static void forEachRunDescending(int[] rows, RunRemoved action) {
+        int last = rows.length - 1;
+        while (last >= 0) {
+            int first = last;
+            while (first > 0 && rows[first - 1] == rows[first] - 1) first--;
+            action.removed(rows[first], rows[last]);
+            last = first - 1;
+        }
+    }
+
+    /** Parses the HH:mm:ss at the end of a sign-out time ("HH:mm:ss" or "yyyy-MM-dd HH:mm:ss") */
+    static int secondsOfDay(String time) {
+        if (time == null || time.length() < 8) return 0;
+
+        int i = time.length() - 8;
+        if (time.charAt(i + 2) != ':' || time.charAt(i + 5) != ':') return 0;
+        return digits(time, i) * 3600 + digits(time, i + 3) * 60 + digits(time, i + 6);
+    }
+
+    private static int digits(String s, int i) {
+        return (s.charAt(i) - '0') * 10 + (s.charAt(i + 1) - '0');
+    }
+}
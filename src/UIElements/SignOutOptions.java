@@ -1,5 +1,14 @@
 package UIElements;
 
+import Diagnostics.Latency;
+import Directory.Person;
+import Directory.PersonnelDirectory;
+import Search.PrefixIndex;
+import Storage.HistoryEngine;
+import Storage.FileWatcher;
+import Storage.HistoryQuery;
+import Storage.SignOutJournal;
+
 import javax.swing.*;
 import javax.swing.border.*;
 import javax.swing.plaf.basic.ComboPopup;
@@ -11,10 +20,16 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class SignOutOptions extends JPanel {
 
@@ -27,14 +42,20 @@ public class SignOutOptions extends JPanel {
     private JCheckBox familyLeaveCheckbox;
     private JCheckBox overnightLeaveCheckbox;
 
-    private Map<String, String> userPins;
+    // Swapped whole when user_pins.txt changes, so authentication never waits on a reload
+    private final AtomicReference<Map<String, String>> userPins = new AtomicReference<>();
+    private PersonnelDirectory personnel;
+    // Past locations and phone numbers by how often they were used, for the field drop-downs
+    private final PrefixIndex locationHistory = new PrefixIndex(8);
+    private final PrefixIndex phoneHistory = new PrefixIndex(8, phone -> phone.replaceAll("[^0-9]", ""));
     private boolean pinFieldError = false;
     private boolean locationError = false;
     private boolean nameError = false;
     private boolean phoneError = false;
 
     public static HashMap<String, String> loadUserPins(File file) {
-        HashMap<String, String> userPins = new HashMap<>();
+        // Kept in file order, which is the order the dropdown lists users in
+        HashMap<String, String> userPins = new LinkedHashMap<>();
 
         if (!file.exists()) {
             System.out.println("PIN file not found: " + file.getAbsolutePath());
@@ -68,7 +89,11 @@ public class SignOutOptions extends JPanel {
         this.roster = roster;
         roster.signOutOptions = this;
 
-        userPins = loadUserPins(new File("user_pins.txt"));
+        File userPinsFile = new File("user_pins.txt");
+        userPins.set(Collections.unmodifiableMap(loadUserPins(userPinsFile)));
+        watchUserPins(userPinsFile);
+        personnel = PersonnelDirectory.load(new File(PersonnelDirectory.FILE_NAME));
+        loadSuggestionHistory(new File("."));
 
         setLayout(new BorderLayout());
         setPreferredSize(UITheme.OPTIONS_PANEL_SIZE);
@@ -155,7 +180,8 @@ public class SignOutOptions extends JPanel {
             }
         });
 
-        CardScannerField scannerField = new CardScannerField(nameField);
+        CardScannerField scannerField = new CardScannerField(nameField, personnel);
+        scannerField.setProfileListener(this::prefillFromProfile);
         scannerField.setMaximumSize(new Dimension(400, UITheme.INPUT_HEIGHT));
         formPanel.add(scannerField);
 
@@ -171,6 +197,9 @@ public class SignOutOptions extends JPanel {
 
         formPanel.add(createFieldGroup("Phone Number", phoneField = createModernTextField("Contact number")));
 
+        SuggestionPopup.attach(locationField, locationHistory, "Where are you going?");
+        SuggestionPopup.attach(phoneField, phoneHistory, "Contact number");
+
         return formPanel;
     }
 
@@ -453,7 +482,7 @@ public class SignOutOptions extends JPanel {
     }
 
     private JComboBox<String> createModernDropdown() {
-        JComboBox<String> dropdown = new JComboBox<>(userPins.keySet().toArray(new String[0])) {
+        JComboBox<String> dropdown = new JComboBox<>(userPins.get().keySet().toArray(new String[0])) {
             @Override
             protected void paintComponent(Graphics g) {
                 Graphics2D g2d = (Graphics2D) g.create();
@@ -749,6 +778,7 @@ public class SignOutOptions extends JPanel {
     }
 
     private void handleSignOut() {
+        long start = System.nanoTime();
         if (!authenticateUser()) return;
 
         String name = getFieldText(nameField);
@@ -762,9 +792,24 @@ public class SignOutOptions extends JPanel {
             return;
         }
 
-        SignOutRecord record = new SignOutRecord(name, location, phoneNumberFormatted(phone),
-                new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()), null);
-        roster.signOut(record);
+        // One record per person, so each can sign in on their own
+        String timeOut = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
+        List<SignOutRecord> members = new ArrayList<>(nameField.getUserCount());
+        for (String user : nameField.getUsers()) {
+            SignOutRecord record = new SignOutRecord(user, location, phoneNumberFormatted(phone), timeOut, null);
+            record.setFamilyLeave(familyLeaveCheckbox.isSelected());
+            record.setOvernightLeave(overnightLeaveCheckbox.isSelected());
+            members.add(record);
+        }
+        if (members.size() == 1) {
+            roster.signOut(members.get(0));
+        } else {
+            roster.signOutParty(members);
+        }
+        locationHistory.add(location);
+        phoneHistory.add(phoneNumberFormatted(phone));
+        // Queued behind the roster repaint, so this measures until the row is on screen
+        SwingUtilities.invokeLater(() -> Latency.record(Latency.PIN_TO_ROSTER_ROW, start));
 
         nameField.clearAll();
         clearField(locationField, "Where are you going?");
@@ -781,6 +826,71 @@ public class SignOutOptions extends JPanel {
         repaint();
     }
 
+    /** Reloads the PINs whenever the file is saved, so users can be added without restarting the kiosk */
+    private void watchUserPins(File file) {
+        try {
+            new FileWatcher(file, 250, () -> {
+                // Saving by rename briefly removes the file; keep the PINs we have until it is back
+                if (!file.exists()) return;
+                Map<String, String> reloaded = Collections.unmodifiableMap(loadUserPins(file));
+                userPins.set(reloaded);
+                System.out.println("Reloaded " + reloaded.size() + " users from " + file.getName());
+                SwingUtilities.invokeLater(() -> updateUserDropdown(reloaded.keySet()));
+            });
+        } catch (IOException e) {
+            System.err.println("Could not watch " + file.getName() + " for changes: " + e.getMessage());
+        }
+    }
+
+    /** Brings the dropdown in line with the users in place, keeping the selection if that user still exists */
+    private void updateUserDropdown(Set<String> users) {
+        DefaultComboBoxModel<String> model = (DefaultComboBoxModel<String>) userDropdown.getModel();
+        Object selected = model.getSelectedItem();
+        for (int i = model.getSize() - 1; i >= 0; i--) {
+            if (!users.contains(model.getElementAt(i))) model.removeElementAt(i);
+        }
+        int i = 0;
+        for (String user : users) {
+            if (i < model.getSize() && user.equals(model.getElementAt(i))) {
+                i++;
+            } else if (model.getIndexOf(user) < 0) {
+                model.insertElementAt(user, i++);
+            }
+        }
+        model.setSelectedItem(users.contains(selected) ? selected : null);
+    }
+
+    /** Counts every past day's locations and phone numbers in the background; suggestions fill in as it goes */
+    private void loadSuggestionHistory(File directory) {
+        Thread loader = new Thread(() -> {
+            long start = System.nanoTime();
+            int[] rows = {0};
+            // Today's file is still being written while sign-outs are counted as they happen; reading it would count some twice
+            HistoryQuery before = HistoryQuery.all().between(null, LocalDate.now().minusDays(1));
+            new HistoryEngine(directory).query(before, row -> {
+                String location = row.getLocation();
+                if (location.endsWith(SignOutJournal.CARRIED_OVER)) {
+                    location = location.substring(0, location.length() - SignOutJournal.CARRIED_OVER.length());
+                }
+                locationHistory.add(location);
+                phoneHistory.add(row.getPhone());
+                rows[0]++;
+            });
+            System.out.println("Indexed " + rows[0] + " past sign-outs for suggestions in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }, "suggestion-history");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /** Fills in the phone number stored for a scanned card, unless the operator already typed one */
+    private void prefillFromProfile(Person person) {
+        if (person.getPhone().isEmpty() || !getFieldText(phoneField).isEmpty()) return;
+        phoneField.setText(phoneNumberFormatted(person.getPhone()));
+        phoneField.setForeground(UITheme.TEXT_PRIMARY);
+        clearPhoneError();
+    }
+
     private String phoneNumberFormatted(String input) {
         if (input == null) return "";
         String phoneNumber = input.replaceAll("[^0-9]", "");
@@ -794,10 +904,15 @@ public class SignOutOptions extends JPanel {
     private void handleSignIn() {
         if (!authenticateUser()) return;
 
-        SignOutRecord selected = roster.getSelectedRecord();
-        if (selected != null) {
-            roster.signIn(selected, new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()));
+        // One PIN covers every selected row; several are signed in as one batch
+        List<SignOutRecord> selected = roster.getSelectedRecords();
+        String time = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
+        if (selected.size() == 1) {
+            roster.signIn(selected.get(0), time);
+        } else if (!selected.isEmpty()) {
+            roster.signInAll(selected, time);
         }
+        roster.clearSelection();
         pinField.setText("");
     }
 
@@ -833,7 +948,7 @@ public class SignOutOptions extends JPanel {
             return false;
         }
 
-        String correctPin = userPins.get(user);
+        String correctPin = userPins.get().get(user);
         if (!enteredPin.equals(correctPin)) {
             triggerPinError();
             pinField.setText("");
@@ -1,12 +1,20 @@
 package UIElements;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class SignOutRecord {
+    private long id = -1;
+    private String origin;
+    private String party;
+    private long arrival = -1;
     private String timeSignedOut;
     private String timeSignedIn;
     private String name;
     private String location;
     private String phone;
-
+    private boolean familyLeave;
+    private boolean overnightLeave;
 
     public SignOutRecord(String name, String location, String phone, String signOutTime, String signInTime) {
         this.name = name;
@@ -16,12 +24,34 @@ public class SignOutRecord {
         this.timeSignedIn = signInTime;
     }
 
+    /** Journal-assigned record ID, or -1 if the record has not been persisted yet */
+    public long getId() { return id; }
+    public void setId(long id) { this.id = id; }
+
+    /** Cluster-wide identity ("node:stamp") shared by every kiosk that holds this record */
+    public String getOrigin() { return origin; }
+    public void setOrigin(String origin) { this.origin = origin; }
+
+    /** Order the roster engine published the record in, fixed before any view sees it; -1 until then */
+    public long getArrival() { return arrival; }
+    public void setArrival(long arrival) { this.arrival = arrival; }
+
+    /** ID shared by the members of a group sign-out, one record per person; null when signed out alone */
+    public String getParty() { return party; }
+    public void setParty(String party) { this.party = party; }
+
     public String getTimeSignedOut() { return timeSignedOut; }
     public void setTimeSignedOut(String timeSignedOut) { this.timeSignedOut = timeSignedOut; }
 
     public String getTimeSignedIn() { return timeSignedIn; }
     public void setTimeSignedIn(String timeSignedIn) { this.timeSignedIn = timeSignedIn; }
 
+    public boolean isFamilyLeave() { return familyLeave; }
+    public void setFamilyLeave(boolean familyLeave) { this.familyLeave = familyLeave; }
+
+    public boolean isOvernightLeave() { return overnightLeave; }
+    public void setOvernightLeave(boolean overnightLeave) { this.overnightLeave = overnightLeave; }
+
 
     public String getName() {
         return name;
@@ -35,6 +65,39 @@ public class SignOutRecord {
         return phone;
     }
 
+    /** People this record covers: one for a party member, more for a record written before parties existed */
+    public int getHeadCount() {
+        return headCount(name);
+    }
+
+    /**
+     * People in a comma-separated name list, counting only non-blank names, so the
+     * trailing ", " older records end with adds no one; at least one
+     */
+    public static int headCount(String names) {
+        int count = 0;
+        boolean blank = true;
+        for (int i = 0; i <= names.length(); i++) {
+            if (i == names.length() || names.charAt(i) == ',') {
+                if (!blank) count++;
+                blank = true;
+            } else if (names.charAt(i) > ' ') {
+                blank = false;
+            }
+        }
+        return Math.max(1, count);
+    }
+
+    /** The names in this record, trimmed, skipping the empty entry older records end with */
+    public List<String> getPeople() {
+        List<String> people = new ArrayList<>(2);
+        for (String person : name.split(",")) {
+            String trimmed = person.trim();
+            if (!trimmed.isEmpty()) people.add(trimmed);
+        }
+        return people;
+    }
+
     @Override
     public String toString() {
         return name + " (" + location + ")";
@@ -1,43 +1,61 @@
 package UIElements;
 
-import UIElements.SignOutRecord;
+import Alerts.OverdueLimits;
+import Alerts.OverdueMonitor;
+import Diagnostics.Latency;
+import Engine.RosterEngine;
+import Search.TrigramIndex;
+import Storage.PersistenceExecutor;
 
 import javax.swing.*;
+import javax.swing.event.ListDataListener;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.geom.RoundRectangle2D;
 import java.io.*;
-import java.nio.file.*;
-import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.Date;
 import java.util.List;
-import java.util.ArrayList;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class SignOutRoster extends JList<SignOutRecord> {
 
     public SignOutOptions signOutOptions;
-    private DefaultListModel<SignOutRecord> model;
-    private File csvFile;
-    private final SimpleDateFormat dateFormatter = new SimpleDateFormat("yyyy_MM_dd");
-    private final SimpleDateFormat timeFormatter = new SimpleDateFormat("HH:mm:ss");
-    private Timer dayRolloverTimer;
-    private LocalDate currentTrackedDate;
+    private RosterListModel model;
+    private final TrigramIndex<SignOutRecord> searchIndex = new TrigramIndex<>();
+    private RosterListModel.Projection filteredModel;
+    private String filterQuery = "";
+    private final RosterEngine engine;
+    private final OverdueMonitor overdueMonitor;
+    private Timer overdueTimer;
+
+    // Engine events not yet applied on the EDT; while any are queued, new ones queue behind them
+    private final AtomicInteger queuedEvents = new AtomicInteger();
 
     public SignOutRoster(SignOutOptions op) {
-        model = new DefaultListModel<>();
+        // All file I/O goes through the engine's persistence writer, never the EDT
+        this(op, RosterEngine.fromSystemProperties(new File("."), SwingUtilities::invokeLater));
+        engine.start();
+    }
+
+    /** A view over an engine that may be shared with other front ends; the caller starts the engine */
+    public SignOutRoster(SignOutOptions op, RosterEngine engine) {
+        model = new RosterListModel();
         setModel(model);
 
         signOutOptions = op;
+        this.engine = engine;
 
-        setupCSVFile();
-        loadFromCSV();
+        overdueMonitor = new OverdueMonitor(OverdueLimits.load(new File("overdue_limits.txt")), 1000);
+        overdueMonitor.addListener((record, overdue) -> repaint());
 
-        // Initialize day tracking and start rollover monitoring
-        currentTrackedDate = LocalDate.now();
-        startDayRolloverTimer();
+        for (SignOutRecord record : engine.addListener(new EngineListener())) {
+            addRecord(record, engine.getCurrentDate());
+        }
+        startOverdueTimer();
 
         addMouseListener(new MouseAdapter() {
             @Override
@@ -46,8 +64,9 @@ public class SignOutRoster extends JList<SignOutRecord> {
             }
         });
 
-        setCellRenderer(new ModernRosterCellRenderer());
-        setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        setHighPerformanceRendering(!"false".equalsIgnoreCase(System.getProperty("cco.fastRender")));
+        // Several rows can be picked to sign a formation back in under one PIN
+        setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         setBackground(UITheme.PANEL_BACKGROUND);
         setBorder(UITheme.createEmptyBorder(new Insets(UITheme.SPACING_MD, 0, UITheme.SPACING_MD, 0)));
 
@@ -63,221 +82,238 @@ public class SignOutRoster extends JList<SignOutRecord> {
         });
     }
 
-    /** Starts the timer that checks for day rollover every minute */
-    private void startDayRolloverTimer() {
-        // Check every 60 seconds for day rollover
-        dayRolloverTimer = new Timer(60000, e -> checkForDayRollover());
-        dayRolloverTimer.start();
-
-        System.out.println("Day rollover monitoring started - checking every minute");
-    }
-
-    /** Checks if a new day has started and handles the transition */
-    private void checkForDayRollover() {
-        LocalDate today = LocalDate.now();
-
-        if (!today.equals(currentTrackedDate)) {
-            System.out.println("Day rollover detected: " + currentTrackedDate + " -> " + today);
-            handleDayRollover(today);
-            currentTrackedDate = today;
+    /** Mirrors engine changes into the list model on the EDT */
+    private class EngineListener implements RosterEngine.Listener {
+        @Override
+        public void recordAdded(SignOutRecord record) {
+            // Taken now, under the engine's lock, so a rollover queued behind this cannot move the record's day
+            LocalDate day = engine.getCurrentDate();
+            onEdt(() -> addRecord(record, day));
         }
-    }
-
-    /** Handles the transition to a new day */
-    private void handleDayRollover(LocalDate newDate) {
-        // Get all currently signed out people
-        List<SignOutRecord> currentlyOut = getCurrentlySignedOutPeople();
-
-        if (!currentlyOut.isEmpty()) {
-            System.out.println("Found " + currentlyOut.size() + " people still signed out, transferring to new day");
 
-            // Create new CSV file for the new day
-            String newDateStr = newDate.format(DateTimeFormatter.ofPattern("yyyy_MM_dd"));
-            String newFilename = "CCO_SIGNOUTS_" + newDateStr + ".csv";
-            File newCsvFile = new File(newFilename);
-
-            // Create the new CSV file with header
-            createNewCSVFile(newCsvFile);
+        @Override
+        public void recordRemoved(SignOutRecord record) {
+            onEdt(() -> removeRecord(record));
+        }
 
-            // Add all currently signed out people to the new CSV
-            transferSignedOutPeopleToNewDay(currentlyOut, newCsvFile, newDate);
+        @Override
+        public void recordsRemoved(List<SignOutRecord> records) {
+            onEdt(() -> removeRecords(records));
+        }
 
-            // Update the current CSV file reference
-            csvFile = newCsvFile;
+        @Override
+        public void dayRolledOver(LocalDate newDate, List<SignOutRecord> carriedOver, String timeOut) {
+            onEdt(() -> {
+                // The engine set the new times on this thread just before this ran, so the tree re-sorts by them.
+                // Overdue deadlines are not re-tracked, so they still count from the original sign-out
+                model.reorder(carriedOver);
 
-            // Show notification in the UI
-            SwingUtilities.invokeLater(() -> {
-                if (signOutOptions != null) {
+                if (signOutOptions != null && !carriedOver.isEmpty()) {
                     JOptionPane.showMessageDialog(signOutOptions,
-                            "New day detected! " + currentlyOut.size() + " people transferred to " + newDateStr + " records.",
+                            "New day detected! " + carriedOver.size() + " people transferred to "
+                                    + newDate.format(DateTimeFormatter.ofPattern("yyyy_MM_dd")) + " records.",
                             "Day Rollover", JOptionPane.INFORMATION_MESSAGE);
                 }
             });
-        } else {
-            // No one currently signed out, just create new file for new day
-            setupCSVFile();
-            System.out.println("New day started with no one signed out");
         }
-    }
 
-    /** Gets all people currently signed out from the model */
-    private List<SignOutRecord> getCurrentlySignedOutPeople() {
-        List<SignOutRecord> currentlyOut = new ArrayList<>();
+        @Override
+        public void persistenceFailed(IOException error) {
+            onEdt(() -> reportPersistenceError(error));
+        }
+    }
 
-        for (int i = 0; i < model.getSize(); i++) {
-            SignOutRecord record = model.getElementAt(i);
-            // People in the model are currently signed out (no sign-in time)
-            if (record.getTimeSignedIn() == null || record.getTimeSignedIn().isEmpty()) {
-                currentlyOut.add(record);
-            }
+    /** Runs now when already on the EDT with nothing queued, so the UI updates immediately; otherwise queues in order */
+    private void onEdt(Runnable update) {
+        if (SwingUtilities.isEventDispatchThread() && queuedEvents.get() == 0) {
+            update.run();
+            return;
         }
+        queuedEvents.incrementAndGet();
+        SwingUtilities.invokeLater(() -> {
+            queuedEvents.decrementAndGet();
+            update.run();
+        });
+    }
 
-        return currentlyOut;
+    /** Ticks the overdue monitor; each tick only touches one wheel bucket, not the roster */
+    private void startOverdueTimer() {
+        overdueTimer = new Timer((int) overdueMonitor.getTickMillis(), e -> overdueMonitor.tick(System.currentTimeMillis()));
+        overdueTimer.start();
     }
 
-    /** Creates a new CSV file with the proper header */
-    private void createNewCSVFile(File newCsvFile) {
-        try {
-            newCsvFile.createNewFile();
-            try (FileWriter writer = new FileWriter(newCsvFile, false)) {
-                writer.write("PeopleSignedOut,Location,TimeOut,TimeIn,Phone\n");
-            }
-        } catch (IOException e) {
-            System.err.println("Error creating new CSV file: " + e.getMessage());
-            e.printStackTrace();
-        }
+    public RosterEngine getEngine() {
+        return engine;
+    }
+
+    public void signOut(SignOutRecord record) {
+        long start = System.nanoTime();
+        signOut(record, error -> {
+            Latency.record(Latency.SIGN_OUT_TO_DURABLE, start);
+            reportPersistenceError(error);
+        });
     }
 
-    /** Transfers currently signed out people to the new day's CSV file */
-    private void transferSignedOutPeopleToNewDay(List<SignOutRecord> signedOutPeople, File newCsvFile, LocalDate newDate) {
-        String rolloverTime = timeFormatter.format(new Date());
+    /** Signs out immediately in the UI; onPersisted runs on the EDT once the write is durable */
+    public void signOut(SignOutRecord record, PersistenceExecutor.Completion onPersisted) {
+        engine.signOut(record, onPersisted);
+    }
 
-        try (FileWriter writer = new FileWriter(newCsvFile, true)) {
-            for (SignOutRecord record : signedOutPeople) {
-                // Write to new CSV with rollover time as sign-out time
-                writer.write(
-                        record.getName().replace(", ", "%") + "," +
-                                record.getLocation() + " (Carried over)" + "," +
-                                rolloverTime + "," +
-                                "" + "," + // Empty sign-in time
-                                record.getPhone() + "\n"
-                );
+    /** Signs a group out together, one row per person; see RosterEngine.signOutParty */
+    public void signOutParty(List<SignOutRecord> members) {
+        long start = System.nanoTime();
+        engine.signOutParty(members, error -> {
+            Latency.record(Latency.SIGN_OUT_TO_DURABLE, start);
+            reportPersistenceError(error);
+        });
+    }
 
-                // Update the record's sign-out time to reflect the rollover
-                record.setTimeSignedOut(rolloverTime);
+    public void signIn(SignOutRecord record, String time) {
+        long start = System.nanoTime();
+        signIn(record, time, error -> {
+            Latency.record(Latency.SIGN_IN_TO_DURABLE, start);
+            reportPersistenceError(error);
+        });
+    }
 
-                System.out.println("Transferred: " + record.getName() + " to new day");
-            }
-        } catch (IOException e) {
-            System.err.println("Error transferring people to new day: " + e.getMessage());
-            e.printStackTrace();
-        }
+    /** Signs in immediately in the UI; onPersisted runs on the EDT once the write is durable */
+    public void signIn(SignOutRecord record, String time, PersistenceExecutor.Completion onPersisted) {
+        engine.signIn(record, time, onPersisted);
     }
 
-    /** Prepares today's CSV file */
-    private void setupCSVFile() {
-        String todayStr = dateFormatter.format(new Date());
-        String filename = "CCO_SIGNOUTS_" + todayStr + ".csv";
-        csvFile = new File(filename);
+    /** Signs in several records as one change with a single write; see RosterEngine.signInAll */
+    public void signInAll(List<SignOutRecord> records, String time) {
+        long start = System.nanoTime();
+        engine.signInAll(records, time, error -> {
+            Latency.record(Latency.SIGN_IN_TO_DURABLE, start);
+            reportPersistenceError(error);
+        });
+    }
 
-        if (!csvFile.exists()) {
-            createNewCSVFile(csvFile);
-        }
+    public SignOutRecord getSelectedRecord() {
+        return getSelectedValue();
+    }
+
+    public List<SignOutRecord> getSelectedRecords() {
+        return getSelectedValuesList();
     }
 
-    /** Loads the roster from today's CSV file if it exists */
-    private void loadFromCSV() {
-        if (!csvFile.exists()) return;
+    /**
+     * Adds a record from the given day's roster; the search index is updated first
+     * so an active filter sees it. The day dates a bare HH:mm:ss restored from the
+     * journal, so a record carried over before a restart still goes overdue.
+     */
+    private void addRecord(SignOutRecord record, LocalDate day) {
+        searchIndex.add(record, record.getName(), record.getLocation(), record.getPhone());
+        model.add(record);
+        overdueMonitor.track(record, day);
+    }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(csvFile))) {
-            String line = reader.readLine(); // Skip header
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",", -1);
-                if (parts.length >= 5) {
-                    String names = parts[0].replace("%", ", "); // Display nicely
-                    String location = parts[1];
-                    String timeout = parts[2];
-                    String timein = parts[3];
-                    String phone = parts[4];
+    private void removeRecord(SignOutRecord record) {
+        overdueMonitor.untrack(record);
+        model.remove(record);
+        searchIndex.remove(record);
+    }
 
-                    if (timein.equals(""))
-                        model.addElement(new SignOutRecord(names, location, phone, timeout, null));
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+    /** Removes a batch with one model event, so the list repaints once */
+    private void removeRecords(List<SignOutRecord> records) {
+        for (SignOutRecord record : records) {
+            overdueMonitor.untrack(record);
+        }
+        model.removeAll(records);
+        for (SignOutRecord record : records) {
+            searchIndex.remove(record);
         }
     }
 
-    public void signOut(SignOutRecord record) {
-        model.addElement(record);
-        appendToCSV(record, timeFormatter.format(new Date()), "");
+    /** True if the record has been out longer than its location or leave type allows */
+    public boolean isOverdue(SignOutRecord record) {
+        return overdueMonitor.isOverdue(record);
     }
 
-    public void signIn(SignOutRecord record, String time) {
-        record.setTimeSignedIn(time);
-        model.removeElement(record);
-        updateTimeInCSV(record);
+    public int getOverdueCount() {
+        return overdueMonitor.getOverdueCount();
     }
 
-    public SignOutRecord getSelectedRecord() {
-        return getSelectedValue();
+    /** Notified on the EDT whenever records join or leave the roster, whatever the filter shows */
+    public void addRosterListener(ListDataListener listener) {
+        model.addListDataListener(listener);
+    }
+
+    /** Notified on the EDT whenever a record becomes overdue or is signed in while overdue */
+    public void addOverdueListener(OverdueMonitor.Listener listener) {
+        overdueMonitor.addListener(listener);
     }
 
-    private void appendToCSV(SignOutRecord record, String timeOut, String timeIn) {
-        try (FileWriter writer = new FileWriter(csvFile, true)) {
-            writer.write(
-                    record.getName().replace(", ", "%") + "," +
-                            record.getLocation() + "," +
-                            timeOut + "," +
-                            timeIn + "," +
-                            record.getPhone() + "\n"
-            );
-        } catch (IOException e) {
-            e.printStackTrace();
+    /**
+     * Shows only records whose name, location or phone contains the query.
+     * An empty query shows the whole roster again.
+     */
+    public void setFilter(String query) {
+        String q = query == null ? "" : query.trim();
+        if (q.equals(filterQuery)) return;
+        filterQuery = q;
+
+        if (filteredModel != null) {
+            filteredModel.dispose();
+            filteredModel = null;
+        }
+        if (q.isEmpty()) {
+            setModel(model);
+            return;
         }
+
+        // Seed the view from the index; later sign-outs are tested as they arrive
+        filteredModel = model.project(searchIndex.search(q), record -> searchIndex.matches(record, q), null);
+        setModel(filteredModel);
     }
 
-    /** Update TimeIn column for the record when signed in */
-    private void updateTimeInCSV(SignOutRecord record) {
-        try {
-            java.util.List<String> lines = Files.readAllLines(csvFile.toPath());
-            for (int i = 1; i < lines.size(); i++) { // Skip header
-                String[] parts = lines.get(i).split(",", -1);
-                if (parts.length >= 5) {
-                    String names = parts[0].replace("%", ", ");
-                    String phone = parts[4];
-
-                    // Match by name & phone
-                    if (names.equals(record.getName()) && phone.equals(record.getPhone())) {
-                        parts[3] = timeFormatter.format(new Date());
-                        lines.set(i, String.join(",", parts));
-                        break;
-                    }
-                }
-            }
-            Files.write(csvFile.toPath(), lines);
-        } catch (IOException e) {
-            e.printStackTrace();
+    public String getFilter() {
+        return filterQuery;
+    }
+
+    private void reportPersistenceError(IOException error) {
+        if (error == null) return;
+
+        JOptionPane.showMessageDialog(signOutOptions,
+                "Could not save to disk: " + error.getMessage(),
+                "Save Failed", JOptionPane.ERROR_MESSAGE);
+    }
+
+    /**
+     * Switches between the fixed-height, directly painted renderer and the
+     * original layout-based one. Fixed cell sizes let the list skip measuring
+     * every row.
+     */
+    public void setHighPerformanceRendering(boolean enabled) {
+        if (enabled) {
+            FastRosterCellRenderer renderer = new FastRosterCellRenderer(this);
+            setCellRenderer(renderer);
+            setFixedCellHeight(renderer.getCellHeight());
+            setFixedCellWidth(FastRosterCellRenderer.MIN_CELL_WIDTH);
+        } else {
+            setCellRenderer(new ModernRosterCellRenderer());
+            setFixedCellHeight(-1);
+            setFixedCellWidth(-1);
         }
     }
 
-    /** Stops the day rollover timer when the component is no longer needed */
+    /** Stops the day rollover and overdue timers when the component is no longer needed */
     public void stopDayRolloverTimer() {
-        if (dayRolloverTimer != null) {
-            dayRolloverTimer.stop();
-            System.out.println("Day rollover monitoring stopped");
+        engine.stopRolloverChecks();
+        if (overdueTimer != null) {
+            overdueTimer.stop();
         }
     }
 
     /** Gets the current CSV file being used */
     public File getCurrentCSVFile() {
-        return csvFile;
+        return engine.getCurrentCSVFile();
     }
 
     /** Gets the current tracked date */
     public LocalDate getCurrentTrackedDate() {
-        return currentTrackedDate;
+        return engine.getCurrentDate();
     }
 
     /** Applies modern scrollbar styling to match the UITheme */
@@ -400,6 +436,10 @@ public class SignOutRoster extends JList<SignOutRecord> {
         }
     }
 
+    private static boolean isOverdue(JList<? extends SignOutRecord> list, SignOutRecord record) {
+        return list instanceof SignOutRoster && ((SignOutRoster) list).isOverdue(record);
+    }
+
     // ---------------------------------------------------
     // --------- Modern Roster Cell Renderer ------------
     // ---------------------------------------------------
@@ -463,6 +503,11 @@ public class SignOutRoster extends JList<SignOutRecord> {
                 nameLabel.setForeground(UITheme.ACCENT_BLUE.darker());
                 locationLabel.setForeground(UITheme.ACCENT_BLUE);
                 phoneLabel.setForeground(UITheme.TEXT_SECONDARY);
+            } else if (record != null && isOverdue(list, record)) {
+                setBackground(UITheme.OVERDUE_BACKGROUND);
+                nameLabel.setForeground(UITheme.STATUS_OVERDUE);
+                locationLabel.setForeground(UITheme.TEXT_SECONDARY);
+                phoneLabel.setForeground(UITheme.TEXT_MUTED);
             } else {
                 setBackground(index % 2 == 0 ? UITheme.ALTERNATING_ROW : UITheme.PANEL_BACKGROUND);
                 nameLabel.setForeground(UITheme.TEXT_PRIMARY);
@@ -470,7 +515,7 @@ public class SignOutRoster extends JList<SignOutRecord> {
                 phoneLabel.setForeground(UITheme.TEXT_MUTED);
             }
 
-            if (cellHasFocus && !isSelected) {
+            if (cellHasFocus && !isSelected && getBackground() != UITheme.OVERDUE_BACKGROUND) {
                 setBackground(UITheme.HOVER_BACKGROUND);
             }
 
@@ -501,5 +546,157 @@ public class SignOutRoster extends JList<SignOutRecord> {
             super.paintComponent(g);
         }
     }
-}
 
+    // ---------------------------------------------------
+    // ----------- Fast Roster Cell Renderer ------------
+    // ---------------------------------------------------
+    /**
+     * Paints a row with a handful of draw calls: one cached rounded shape, and
+     * text whose widths and truncation are measured once per record.
+     */
+    private static class FastRosterCellRenderer extends JComponent implements ListCellRenderer<SignOutRecord> {
+        static final int MIN_CELL_WIDTH = 200;
+        private static final int PHONE_WIDTH = 120;
+        private static final Insets PADDING = new Insets(UITheme.SPACING_LG, UITheme.SPACING_XL, UITheme.SPACING_LG, UITheme.SPACING_XL);
+
+        /** Measured text for one record; rebuilt only if the record's strings change */
+        private static final class RowText {
+            String name, location, phone;
+            int nameWidth, phoneWidth;
+            int locationMaxWidth = -1;
+            String locationClipped;
+        }
+
+        private final FontMetrics nameMetrics;
+        private final FontMetrics detailMetrics;
+        private final RoundRectangle2D.Float shape = new RoundRectangle2D.Float();
+        private final Map<SignOutRecord, RowText> textCache = new WeakHashMap<>();
+
+        private RowText text;
+        private boolean isSelected;
+        private Color background;
+        private Color nameColor;
+        private Color locationColor;
+        private Color phoneColor;
+
+        FastRosterCellRenderer(JComponent list) {
+            nameMetrics = list.getFontMetrics(UITheme.FONT_LIST_ITEM_NAME);
+            detailMetrics = list.getFontMetrics(UITheme.FONT_LIST_ITEM_DETAIL);
+            setOpaque(false);
+        }
+
+        int getCellHeight() {
+            return PADDING.top + PADDING.bottom + Math.max(nameMetrics.getHeight(), detailMetrics.getHeight());
+        }
+
+        @Override
+        public Component getListCellRendererComponent(
+                JList<? extends SignOutRecord> list,
+                SignOutRecord record,
+                int index,
+                boolean isSelected,
+                boolean cellHasFocus) {
+
+            this.isSelected = isSelected;
+            this.text = record == null ? null : measure(record);
+
+            if (isSelected) {
+                background = UITheme.SELECTION_BACKGROUND;
+                nameColor = UITheme.ACCENT_BLUE.darker();
+                locationColor = UITheme.ACCENT_BLUE;
+                phoneColor = UITheme.TEXT_SECONDARY;
+            } else if (record != null && isOverdue(list, record)) {
+                background = UITheme.OVERDUE_BACKGROUND;
+                nameColor = UITheme.STATUS_OVERDUE;
+                locationColor = UITheme.TEXT_SECONDARY;
+                phoneColor = UITheme.TEXT_MUTED;
+            } else {
+                background = cellHasFocus ? UITheme.HOVER_BACKGROUND
+                        : index % 2 == 0 ? UITheme.ALTERNATING_ROW : UITheme.PANEL_BACKGROUND;
+                nameColor = UITheme.TEXT_PRIMARY;
+                locationColor = UITheme.TEXT_SECONDARY;
+                phoneColor = UITheme.TEXT_MUTED;
+            }
+            return this;
+        }
+
+        private RowText measure(SignOutRecord record) {
+            RowText t = textCache.get(record);
+            if (t != null && t.name == record.getName() && t.location == record.getLocation() && t.phone == record.getPhone()) {
+                return t;
+            }
+
+            t = new RowText();
+            t.name = record.getName();
+            t.location = record.getLocation();
+            t.phone = record.getPhone();
+            t.nameWidth = nameMetrics.stringWidth(t.name);
+            t.phoneWidth = detailMetrics.stringWidth(t.phone);
+            textCache.put(record, t);
+            return t;
+        }
+
+        /** Truncates the location to fit, caching the result for the current cell width */
+        private String clipLocation(RowText t, int maxWidth) {
+            if (t.locationMaxWidth == maxWidth) return t.locationClipped;
+
+            String clipped = t.location;
+            if (detailMetrics.stringWidth(clipped) > maxWidth) {
+                int ellipsis = detailMetrics.stringWidth("...");
+                int end = clipped.length();
+                while (end > 0 && detailMetrics.stringWidth(clipped.substring(0, end)) + ellipsis > maxWidth) {
+                    end--;
+                }
+                clipped = clipped.substring(0, end) + "...";
+            }
+            t.locationMaxWidth = maxWidth;
+            t.locationClipped = clipped;
+            return clipped;
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            // The cell renderer pane already hands us a private Graphics copy
+            Graphics2D g2d = (Graphics2D) g;
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+
+            int width = getWidth();
+            int height = getHeight();
+
+            shape.setRoundRect(UITheme.SPACING_SM, UITheme.SPACING_XS,
+                    width - UITheme.SPACING_MD, height - UITheme.SPACING_XS * 2,
+                    UITheme.BORDER_RADIUS_MEDIUM, UITheme.BORDER_RADIUS_MEDIUM);
+            g2d.setColor(background);
+            g2d.fill(shape);
+
+            if (isSelected) {
+                g2d.setColor(UITheme.SELECTION_BORDER);
+                g2d.setStroke(UITheme.BORDER_STROKE_DEFAULT);
+                g2d.draw(shape);
+            }
+
+            if (text == null) return;
+
+            int nameX = PADDING.left;
+            int nameY = (height - nameMetrics.getHeight()) / 2 + nameMetrics.getAscent();
+            int detailY = (height - detailMetrics.getHeight()) / 2 + detailMetrics.getAscent();
+
+            g2d.setFont(UITheme.FONT_LIST_ITEM_NAME);
+            g2d.setColor(nameColor);
+            g2d.drawString(text.name, nameX, nameY);
+
+            int phoneRight = width - PADDING.right;
+            g2d.setFont(UITheme.FONT_LIST_ITEM_DETAIL);
+            g2d.setColor(phoneColor);
+            g2d.drawString(text.phone, phoneRight - text.phoneWidth, detailY);
+
+            int locationX = nameX + text.nameWidth + UITheme.SPACING_LG;
+            int locationMax = phoneRight - PHONE_WIDTH - UITheme.SPACING_MD - locationX;
+            if (locationMax > 0) {
+                g2d.setColor(locationColor);
+                g2d.drawString(clipLocation(text, locationMax), locationX, detailY);
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package UIElements;
+
+import Search.PrefixIndex;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.List;
+
+/**
+ * Drop-down of completions under a text field, answered from a PrefixIndex as
+ * the operator types. Up and Down move through the list, Enter or a click
+ * takes a suggestion, Escape closes it. Typing never leaves the field: the
+ * popup does not take focus.
+ */
+public class SuggestionPopup {
+
+    private static final int MAX_SUGGESTIONS = 6;
+
+    private final JTextField field;
+    private final PrefixIndex index;
+    private final String placeholder;
+    private final DefaultListModel<String> suggestions = new DefaultListModel<>();
+    private final JList<String> list = new JList<>(suggestions);
+    private final JPopupMenu popup = new JPopupMenu();
+    private boolean accepting = false;
+
+    public static SuggestionPopup attach(JTextField field, PrefixIndex index, String placeholder) {
+        return new SuggestionPopup(field, index, placeholder);
+    }
+
+    private SuggestionPopup(JTextField field, PrefixIndex index, String placeholder) {
+        this.field = field;
+        this.index = index;
+        this.placeholder = placeholder;
+
+        list.setFont(UITheme.FONT_INPUT);
+        list.setForeground(UITheme.TEXT_PRIMARY);
+        list.setSelectionBackground(UITheme.SELECTION_BACKGROUND);
+        list.setSelectionForeground(UITheme.TEXT_PRIMARY);
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setFocusable(false);
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = list.locationToIndex(e.getPoint());
+                if (row >= 0) accept(suggestions.get(row));
+            }
+        });
+
+        popup.setFocusable(false);
+        popup.setBorder(BorderFactory.createLineBorder(UITheme.BORDER_LIGHT));
+        popup.add(list);
+
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) { update(); }
+            public void removeUpdate(DocumentEvent e) { update(); }
+            public void changedUpdate(DocumentEvent e) {}
+        });
+        field.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (!popup.isVisible()) return;
+                int key = e.getKeyCode();
+                if (key == KeyEvent.VK_DOWN) {
+                    move(1);
+                } else if (key == KeyEvent.VK_UP) {
+                    move(-1);
+                } else if (key == KeyEvent.VK_ENTER && list.getSelectedValue() != null) {
+                    accept(list.getSelectedValue());
+                } else if (key == KeyEvent.VK_ESCAPE) {
+                    popup.setVisible(false);
+                } else {
+                    return;
+                }
+                e.consume();
+            }
+        });
+        field.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                popup.setVisible(false);
+            }
+        });
+    }
+
+    /** Re-queries on every edit the operator makes; text set by code (placeholders, prefills) is skipped */
+    private void update() {
+        // Document events arrive mid-edit; read the text once the edit is done
+        SwingUtilities.invokeLater(() -> {
+            String text = field.getText();
+            if (accepting || !field.isFocusOwner() || text.isEmpty() || text.equals(placeholder)) {
+                popup.setVisible(false);
+                return;
+            }
+
+            List<String> matches = index.suggest(text, MAX_SUGGESTIONS);
+            // Nothing to offer once the field already holds the only completion
+            if (matches.isEmpty() || (matches.size() == 1 && matches.get(0).equalsIgnoreCase(text.trim()))) {
+                popup.setVisible(false);
+                return;
+            }
+
+            suggestions.clear();
+            for (String match : matches) {
+                suggestions.addElement(match);
+            }
+            list.clearSelection();
+            list.setVisibleRowCount(matches.size());
+            popup.setPreferredSize(null);
+            popup.pack();
+            popup.setPopupSize(field.getWidth(), popup.getPreferredSize().height);
+            if (!popup.isVisible()) {
+                popup.show(field, 0, field.getHeight());
+            }
+        });
+    }
+
+    private void move(int step) {
+        int row = list.getSelectedIndex() + step;
+        if (row < 0 || row >= suggestions.size()) return;
+        list.setSelectedIndex(row);
+    }
+
+    private void accept(String suggestion) {
+        accepting = true;
+        field.setText(suggestion);
+        field.setCaretPosition(suggestion.length());
+        popup.setVisible(false);
+        SwingUtilities.invokeLater(() -> accepting = false);
+    }
+}
@@ -39,6 +39,8 @@ public class UITheme {
     public static final Color STATUS_SELECTED = ACCENT_BLUE;
     public static final Color STATUS_SUCCESS = ACCENT_GREEN;
     public static final Color STATUS_WARNING = ACCENT_ORANGE;
+    public static final Color STATUS_OVERDUE = ACCENT_RED;
+    public static final Color OVERDUE_BACKGROUND = new Color(254, 242, 242);
 
     // Font Family
     public static final String FONT_FAMILY = "Inter";